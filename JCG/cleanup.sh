@@ -15,7 +15,7 @@ echo "[info] Running sbt clean..."
 sbt clean
 
 # List of folders to delete if they exist
-FOLDERS=("input" "subset_input" "testcasesOutput" "config" "CallGraphs")
+FOLDERS=("input" "subset_input" "testcasesOutput" "config" "CallGraphs" "work")
 
 for folder in "${FOLDERS[@]}"; do
   if [ -d "$folder" ]; then
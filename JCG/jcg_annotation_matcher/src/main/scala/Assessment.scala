@@ -12,6 +12,13 @@ trait Assessment {
     def shortNotation : String
 }
 
+object Assessment {
+    val all: Seq[Assessment] = Seq(Sound, Imprecise, Unsound, Error, Timeout)
+
+    def fromShortNotation(shortNotation: String): Option[Assessment] =
+        all.find(_.shortNotation == shortNotation)
+}
+
 object Sound extends Assessment {
     override def isSound: Boolean = true
     override def isUnsound: Boolean = false
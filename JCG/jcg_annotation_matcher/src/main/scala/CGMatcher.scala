@@ -1,13 +1,16 @@
+import java.io.BufferedInputStream
 import java.io.File
 import java.io.FileInputStream
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ForkJoinTask
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.stream.IntStream
 
-import org.opalj.br
 import org.opalj.br.Annotation
 import org.opalj.br.analyses.Project
 import org.opalj.br.analyses.SomeProject
 import org.opalj.log.GlobalLogContext
 import org.opalj.log.OPALLogger
-import play.api.libs.json.Json
 
 /**
  * For a given project and a computed (serialized as json representation of [[ReachableMethods]])
@@ -21,76 +24,195 @@ object  CGMatcher {
      * Computes whether computed call graph (represented as a json file of [[ReachableMethods]])
      * is sound/unsound/imprecise with regards to the annotations in the specified target project.
      *
+     * If the target has an up-to-date [[Expectations]] file, the annotations are taken from it and
+     * no class file is read at all.
+     *
      * @param parent in case any specified location is a relative path, the `parent` will be used
      *               as root.
+     * @param pool   if given and the target has an [[Expectations]] file, the annotations are
+     *               checked in parallel on this pool, see [[matchExpectations]]. Annotations read
+     *               from the class files are always checked one after another.
      */
     def matchCallSites(
         projectSpec:         ProjectSpecification,
         JREPath:             String,
         parent:              File,
         serializedCallGraph: File,
-        verbose:             Boolean              = false
+        verbose:             Boolean              = false,
+        pool:                Option[ForkJoinPool] = None
     ): Assessment = {
         if (!verbose)
             OPALLogger.updateLogger(GlobalLogContext, new DevNullLogger())
 
-        val jreFiles = JRELocation.getAllJREJars(JREPath)
-        implicit val p: SomeProject = Project(
-            Array(projectSpec.target(parent)) ++ projectSpec.allClassPathEntryFiles(parent) ++ jreFiles,
-            Array.empty[File]
+        if(!serializedCallGraph.exists()){
+            return Error;
+        }
+
+        Expectations.read(projectSpec.target(parent)) match {
+            case Some(expectations) ⇒
+                matchExpectations(expectations.annotatedMethods.iterator, serializedCallGraph, verbose, pool)
+            case None ⇒
+                matchCallSites(project(projectSpec, JREPath, parent), serializedCallGraph, verbose)
+        }
+    }
+
+    /**
+     * Creates the project of a test case: the target and its class path are project class files,
+     * the JRE is an interface-only library shared with all other test cases via the
+     * [[JREClassFileCache]].
+     */
+    def project(projectSpec: ProjectSpecification, JREPath: String, parent: File): SomeProject = {
+        val projectFiles = Array(projectSpec.target(parent)) ++ projectSpec.allClassPathEntryFiles(parent)
+        Project(
+            Project.JavaClassFileReader().AllClassFiles(projectFiles),
+            JREClassFileCache(JREPath),
+            libraryClassFilesAreInterfacesOnly = true
         )
+    }
 
+    /**
+     * Computes the [[Assessment]] of the computed call graph for the annotations in the project
+     * class files of `p`.
+     *
+     * The annotations are verified while they are extracted, see [[expectations]], hence, they
+     * are checked one after another: a method after the first annotation that is not sound is
+     * neither verified nor matched.
+     */
+    def matchCallSites(
+        p:                   SomeProject,
+        serializedCallGraph: File,
+        verbose:             Boolean
+    ): Assessment = {
         if(!serializedCallGraph.exists()){
             return Error;
         }
 
-        val computedReachableMethods =
-            Json.parse(new FileInputStream(serializedCallGraph)).validate[ReachableMethods].get.toMap
+        matchExpectations(expectations(p), serializedCallGraph, verbose)
+    }
 
+    /**
+     * Extracts the call annotations of all project class files of `p`, in the same order as the
+     * expectations files: classes by name, methods by name and descriptor. The annotations of a
+     * method are verified using the [[AnnotationVerifier]] when the method is reached, hence, the
+     * remaining methods are not verified if the matching stops early.
+     */
+    def expectations(implicit p: SomeProject): Iterator[AnnotatedMethod] = {
         for {
-            clazz ← p.allProjectClassFiles
-            method ← clazz.methodsWithBody
+            clazz ← p.allProjectClassFiles.toSeq.sortBy(_.thisType.toJava).iterator
+            method ← clazz.methodsWithBody.toSeq.sortBy(m ⇒ m.name + m.descriptor.toJVMDescriptor)
             if AnnotationHelper.isAnnotatedMethod(method)
-        } {
+        } yield {
             // check if the call site might not be ambiguous
             AnnotationVerifier.verifyNoAmbiguousCalls(method)
 
-            val annotatedMethod = convertMethod(method)
+            val annotations = method.annotations.map { annotation ⇒
+                val directCalls = AnnotationHelper.directCallAnnotations(annotation).map { dc ⇒
+                    // here we identify call sites only by name and line number, not regarding types
+                    AnnotationVerifier.verifyDirectCallAnnotation(dc, method)
+                    expectedCall(dc)
+                }
+                val indirectCalls = AnnotationHelper.indirectCallAnnotations(annotation).map { ic ⇒
+                    AnnotationVerifier.verifyCallExistence(ic, method)
+                    expectedCall(ic)
+                }
+                ExpectedCalls(directCalls, indirectCalls)
+            }
+
+            AnnotatedMethod(
+                convertMethod(method),
+                annotations.filter(a ⇒ a.directCalls.nonEmpty || a.indirectCalls.nonEmpty)
+            )
+        }
+    }
 
-            for (annotation ← method.annotations) {
+    /**
+     * Computes the [[Assessment]] of the computed call graph for the given annotated methods,
+     * i.e., the assessment of the first annotation that is not sound.
+     *
+     * Without a `pool`, the annotations are checked one after another and the remaining
+     * `annotatedMethods` are not consumed once the result is known. With a `pool`, all
+     * `annotatedMethods` are consumed first and the annotations are checked in parallel;
+     * annotations after the first one known to be not sound are skipped. Hence, a `pool` must
+     * only be given if consuming `annotatedMethods` has no effect, e.g., if they are read from an
+     * [[Expectations]] file, and not for the lazily verified [[expectations]] of a project.
+     */
+    def matchExpectations(
+        annotatedMethods:    Iterator[AnnotatedMethod],
+        serializedCallGraph: File,
+        verbose:             Boolean,
+        pool:                Option[ForkJoinPool]     = None
+    ): Assessment = {
+        val computedCallGraph = {
+            val input = new BufferedInputStream(new FileInputStream(serializedCallGraph), 1 << 16)
+            try {
+                // the adapters may also write the binary format, see EvaluationHelper.readCG
+                if (ReachableMethodsBinary.isBinary(input)) ReachableMethodsBinary.read(input)
+                else ReachableMethodsReader.read(input)
+            } finally {
+                input.close()
+            }
+        }
+        val computedReachableMethods = computedCallGraph.toMap
 
-                val directCallAnnotations = AnnotationHelper.directCallAnnotations(annotation)
+        // only needed if there are indirect calls to check
+        lazy val reachability = new ReachabilityIndex(IdCallGraph(computedCallGraph))
 
-                val csAssessment = handleDirectCallAnnotations(
-                    computedReachableMethods.getOrElse(annotatedMethod, Set.empty),
-                    annotatedMethod,
-                    method,
-                    directCallAnnotations,
-                    verbose
-                )
+        def assess(annotatedMethod: Method, annotation: ExpectedCalls): Assessment = {
+            val csAssessment = handleDirectCallAnnotations(
+                computedReachableMethods.getOrElse(annotatedMethod, Set.empty),
+                annotatedMethod,
+                annotation.directCalls,
+                verbose
+            )
 
-                if (csAssessment.isUnsound) {
-                    return Unsound;
-                }
+            if (csAssessment.isUnsound) {
+                return Unsound;
+            }
 
-                val indirectCallAnnotations = AnnotationHelper.indirectCallAnnotations(annotation)
+            val icsAssessment = handleIndirectCallAnnotations(
+                reachability,
+                annotatedMethod,
+                annotation.indirectCalls,
+                verbose
+            )
 
-                val icsAssessment = handleIndirectCallAnnotations(
-                    computedReachableMethods,
-                    method,
-                    indirectCallAnnotations,
-                    verbose
-                )
+            csAssessment.combine(icsAssessment)
+        }
 
-                val finalAssessment = csAssessment.combine(icsAssessment)
+        pool match {
+            case None ⇒
+                for {
+                    AnnotatedMethod(annotatedMethod, annotations) ← annotatedMethods
+                    annotation ← annotations
+                } {
+                    val finalAssessment = assess(annotatedMethod, annotation)
+                    if (!finalAssessment.isSound)
+                        return finalAssessment;
+                }
 
-                if (!finalAssessment.isSound)
-                    return finalAssessment;
-            }
+                Sound
+
+            case Some(p) ⇒
+                val annotations = annotatedMethods.flatMap { am ⇒
+                    am.annotations.map(am.method → _)
+                }.toIndexedSeq
+                val assessments = new Array[Assessment](annotations.size)
+                val firstNonSound = new AtomicInteger(annotations.size)
+
+                // parallel streams run on the pool of the calling fork/join task
+                p.invoke(ForkJoinTask.adapt(() ⇒ {
+                    IntStream.range(0, annotations.size).parallel().forEach { i ⇒
+                        if (i < firstNonSound.get) {
+                            val (annotatedMethod, annotation) = annotations(i)
+                            assessments(i) = assess(annotatedMethod, annotation)
+                            if (!assessments(i).isSound)
+                                firstNonSound.accumulateAndGet(i, math.min)
+                        }
+                    }
+                }))
 
+                if (firstNonSound.get < annotations.size) assessments(firstNonSound.get) else Sound
         }
-
-        Sound
     }
 
     /**
@@ -98,19 +220,15 @@ object  CGMatcher {
      * whether the prohibit call targets are not present in the computed call graph.
      */
     private def handleDirectCallAnnotations(
-        computedCallSites:     Set[CallSite],
-        annotatedMethod:       Method,
-        method:                br.Method,
-        directCallAnnotations: Seq[Annotation],
-        verbose:               Boolean
-    )(implicit p: SomeProject): Assessment = {
+        computedCallSites: Set[CallSite],
+        annotatedMethod:   Method,
+        directCalls:       Seq[ExpectedCall],
+        verbose:           Boolean
+    ): Assessment = {
         var finalAssessment: Assessment = Sound
-        for (annotation ← directCallAnnotations) {
-            // here we identify call sites only by name and line number, not regarding types
-            AnnotationVerifier.verifyDirectCallAnnotation(annotation, method)
-
-            val line = AnnotationHelper.getLineNumber(annotation)
-            val name = AnnotationHelper.getName(annotation)
+        for (directCall ← directCalls) {
+            val line = directCall.line
+            val name = directCall.name
 
             computedCallSites.find { cs ⇒
                 cs.line == line && cs.declaredTarget.name == name
@@ -119,9 +237,7 @@ object  CGMatcher {
 
                     val computedTargets = computedCallSite.targets.map(_.declaringClass)
 
-                    val resolvedTargets = AnnotationHelper.getResolvedTargets(annotation)
-                    AnnotationVerifier.verifyJVMTypes(resolvedTargets)
-                    for (annotatedTgt ← resolvedTargets) {
+                    for (annotatedTgt ← directCall.resolvedTargets) {
                         if (!computedTargets.contains(annotatedTgt)) {
                             if (verbose)
                                 println(s"[info][CG matcher] $line:${annotatedMethod.declaringClass}#${annotatedMethod.name}:\t there is no call to $annotatedTgt#$name")
@@ -131,9 +247,7 @@ object  CGMatcher {
                         }
                     }
 
-                    val prohibitedTargets = AnnotationHelper.getProhibitedTargets(annotation)
-                    AnnotationVerifier.verifyJVMTypes(prohibitedTargets)
-                    for (prohibitedTgt ← prohibitedTargets) {
+                    for (prohibitedTgt ← directCall.prohibitedTargets) {
                         if (computedTargets.contains(prohibitedTgt)) {
                             if (verbose)
                                 println(s"[info][CG matcher] $line:${annotatedMethod.declaringClass}#${annotatedMethod.name}:\t there is a call to prohibited target $prohibitedTgt#$name")
@@ -158,33 +272,26 @@ object  CGMatcher {
      * whether the prohibit call targets are not present in the computed call graph.
      */
     private def handleIndirectCallAnnotations(
-        reachableMethods:        Map[Method, Set[CallSite]],
-        source:                  br.Method,
-        indirectCallAnnotations: Seq[Annotation],
-        verbose:                 Boolean
-    )(implicit p: SomeProject): Assessment = {
-        val annotatedSource = convertMethod(source)
+        reachability:    ReachabilityIndex,
+        annotatedSource: Method,
+        indirectCalls:   Seq[ExpectedCall],
+        verbose:         Boolean
+    ): Assessment = {
         var finalAssessment: Assessment = Sound
-        for (annotation ← indirectCallAnnotations) {
-            AnnotationVerifier.verifyCallExistence(annotation, source)
-
-            val name = AnnotationHelper.getName(annotation)
-            val returnType = AnnotationHelper.getReturnType(annotation).toJVMTypeName
-            val parameterTypes = AnnotationHelper.getParameterList(annotation).map(_.toJVMTypeName)
+        for (indirectCall ← indirectCalls) {
+            val name = indirectCall.name
+            val returnType = indirectCall.returnType
+            val parameterTypes = indirectCall.parameterTypes
 
-            val resolvedTargets = AnnotationHelper.getResolvedTargets(annotation)
-            AnnotationVerifier.verifyJVMTypes(resolvedTargets)
-            for (declaringClass ← resolvedTargets) {
+            for (declaringClass ← indirectCall.resolvedTargets) {
                 val annotatedTarget = Method(name, declaringClass, returnType, parameterTypes)
-                if (!callsIndirectly(reachableMethods, annotatedSource, annotatedTarget, verbose))
+                if (!callsIndirectly(reachability, annotatedSource, annotatedTarget, verbose))
                     return Unsound;
             }
 
-            val prohibitedTargets = AnnotationHelper.getProhibitedTargets(annotation)
-            AnnotationVerifier.verifyJVMTypes(prohibitedTargets)
-            for (prohibitedTgt ← prohibitedTargets) {
+            for (prohibitedTgt ← indirectCall.prohibitedTargets) {
                 val annotatedTarget = Method(name, prohibitedTgt, returnType, parameterTypes)
-                if (callsIndirectly(reachableMethods, annotatedSource, annotatedTarget, verbose))
+                if (callsIndirectly(reachability, annotatedSource, annotatedTarget, verbose))
                     finalAssessment = finalAssessment.combine(Imprecise)
             }
         }
@@ -196,42 +303,45 @@ object  CGMatcher {
      * Is there a path in the call graph from the `source` to the `annotatedTarget`?
      */
     private def callsIndirectly(
-        reachableMethods: Map[Method, Set[CallSite]],
-        source:           Method,
-        annotatedTarget:  Method,
-        verbose:          Boolean
+        reachability:    ReachabilityIndex,
+        source:          Method,
+        annotatedTarget: Method,
+        verbose:         Boolean
     ): Boolean = {
-        var visited: Set[Method] = Set(source)
-        var workset: Set[Method] = Set(source)
-
-        while (workset.nonEmpty) {
-            val currentSource = workset.head
-            workset = workset.tail
-
-            val computedCallSites = reachableMethods.getOrElse(currentSource, Set.empty)
+        val reachable = reachability.isReachable(source, annotatedTarget)
 
-            for (tgt ← computedCallSites.flatMap(_.targets)) {
-                if (tgt == annotatedTarget) {
-                    if (verbose) println(s"[info][CG matcher] Found transitive call $source -> $annotatedTarget")
-                    return true;
-                }
-
-                if (!visited.contains(tgt)) {
-                    visited += tgt
-                    workset += tgt
-                }
-            }
+        if (verbose) {
+            if (reachable) println(s"[info][CG matcher] Found transitive call $source -> $annotatedTarget")
+            else println(s"[info][CG matcher] Missed transitive call $source -> $annotatedTarget")
         }
 
-        if (verbose) println(s"[info][CG matcher] Missed transitive call $source -> $annotatedTarget")
-
-        false
+        reachable
     }
 
     //
     // UTILITY FUNCTIONS
     //
 
+    /**
+     * Converts a [[lib.annotations.callgraph.DirectCall]] or
+     * [[lib.annotations.callgraph.IndirectCall]] annotation, verifying the target types.
+     */
+    private def expectedCall(annotation: Annotation)(implicit p: SomeProject): ExpectedCall = {
+        val resolvedTargets = AnnotationHelper.getResolvedTargets(annotation)
+        AnnotationVerifier.verifyJVMTypes(resolvedTargets)
+        val prohibitedTargets = AnnotationHelper.getProhibitedTargets(annotation)
+        AnnotationVerifier.verifyJVMTypes(prohibitedTargets)
+
+        ExpectedCall(
+            AnnotationHelper.getName(annotation),
+            AnnotationHelper.getLineNumber(annotation),
+            AnnotationHelper.getReturnType(annotation).toJVMTypeName,
+            AnnotationHelper.getParameterList(annotation).map(_.toJVMTypeName),
+            resolvedTargets,
+            prohibitedTargets
+        )
+    }
+
     private def convertMethod(method: org.opalj.br.Method): Method = {
         val name = method.name
         val declaringClass = method.classFile.thisType.toJVMTypeName
@@ -0,0 +1,88 @@
+import java.io.File
+import java.io.FileInputStream
+
+import play.api.libs.json.Json
+
+import org.opalj.br.analyses.Project
+import org.opalj.br.analyses.SomeProject
+import org.opalj.log.GlobalLogContext
+import org.opalj.log.OPALLogger
+
+/**
+ * Compares the time needed to match the call graphs of a whole test suite when every test case
+ * parses the complete JRE as project class files (the former behaviour of
+ * [[CGMatcher.matchCallSites]]) with the time needed when the JRE is shared through the
+ * [[JREClassFileCache]] and, if the test cases have [[Expectations]] files, with the time needed
+ * when the annotations are read from these files. All variants must yield the same assessments.
+ *
+ * Usage: `CGMatcherBenchmark <projectsDir> <jre.conf> <resultsDir> [<framework> [<algorithm>]]`
+ *
+ * The call graphs are read from `<resultsDir>/<test>/<framework>/<algorithm>/cg.json`
+ * (default: `NativeImage/PTA`), i.e., from the results of a previous evaluation run.
+ */
+object CGMatcherBenchmark {
+
+    def main(args: Array[String]): Unit = {
+        assert(
+            args.length >= 3,
+            "usage: CGMatcherBenchmark <projectsDir> <jre.conf> <resultsDir> [<framework> [<algorithm>]]"
+        )
+        val projectsDir = new File(args(0))
+        val jreLocations = JRELocation.mapping(new File(args(1)))
+        val resultsDir = new File(args(2))
+        val framework = if (args.length > 3) args(3) else "NativeImage"
+        val algorithm = if (args.length > 4) args(4) else "PTA"
+
+        OPALLogger.updateLogger(GlobalLogContext, new DevNullLogger())
+
+        val tests = projectsDir.listFiles(_.getName.endsWith(".conf")).sorted.toSeq.map { psf ⇒
+            val projectSpec = Json.parse(new FileInputStream(psf)).validate[ProjectSpecification].get
+            val cgFile = new File(resultsDir, s"${projectSpec.name}/$framework/$algorithm/cg.json")
+            (projectSpec, cgFile)
+        }.filter(_._2.exists())
+        assert(tests.nonEmpty, s"no call graphs of $framework $algorithm found in $resultsDir")
+        println(s"matching ${tests.size} call graph(s) of $framework $algorithm")
+
+        def legacyProject(projectSpec: ProjectSpecification): SomeProject = Project(
+            Array(projectSpec.target(projectsDir)) ++
+                projectSpec.allClassPathEntryFiles(projectsDir) ++
+                JRELocation.getAllJREJars(jreLocations(projectSpec.java)),
+            Array.empty[File]
+        )
+
+        def sharedProject(projectSpec: ProjectSpecification): SomeProject =
+            CGMatcher.project(projectSpec, jreLocations(projectSpec.java), projectsDir)
+
+        def run(name: String, matchCallSites: (ProjectSpecification, File) ⇒ Assessment): Seq[Assessment] = {
+            System.gc()
+            val start = System.nanoTime()
+            val assessments = tests.map { case (projectSpec, cgFile) ⇒ matchCallSites(projectSpec, cgFile) }
+            val seconds = (System.nanoTime() - start) / 1e9
+            println(f"$name%-8s $seconds%8.2f s total, ${seconds / tests.size * 1000}%8.1f ms per test")
+            assessments
+        }
+
+        val legacy = run("legacy", (spec, cg) ⇒ CGMatcher.matchCallSites(legacyProject(spec), cg, verbose = false))
+        JREClassFileCache.clear()
+        val shared = run("shared", (spec, cg) ⇒ CGMatcher.matchCallSites(sharedProject(spec), cg, verbose = false))
+        compare("shared", legacy, shared)
+
+        if (tests.forall { case (spec, _) ⇒ Expectations.read(spec.target(projectsDir)).isDefined }) {
+            val manifest = run("manifest", (spec, cg) ⇒ {
+                val expectations = Expectations.read(spec.target(projectsDir)).get
+                CGMatcher.matchExpectations(expectations.annotatedMethods.iterator, cg, verbose = false)
+            })
+            compare("manifest", legacy, manifest)
+        } else {
+            println("skipping manifest, not all test cases have up-to-date expectations files")
+        }
+
+        def compare(name: String, legacy: Seq[Assessment], other: Seq[Assessment]): Unit = {
+            val differences = tests.map(_._1.name).zip(legacy.zip(other)).filter { case (_, (l, o)) ⇒ l != o }
+            for ((test, (l, o)) ← differences)
+                println(s"assessment differs for $test: ${l.shortNotation} (legacy) vs. ${o.shortNotation} ($name)")
+            if (differences.isEmpty)
+                println(s"all assessments of $name agree with legacy")
+        }
+    }
+}
@@ -0,0 +1,34 @@
+import java.io.File
+import java.net.URL
+import java.util.concurrent.ConcurrentHashMap
+
+import org.opalj.br.ClassFile
+import org.opalj.br.analyses.Project
+
+/**
+ * Process-wide cache of the class files of the JREs used by the [[CGMatcher]].
+ *
+ * The class files of a JRE are read once, on first use, with OPAL's library reader, i.e.,
+ * without method bodies, and are then shared by the projects of all test cases using that JRE.
+ * They are only needed to complete the class hierarchy; the annotations are read from the
+ * project class files.
+ */
+object JREClassFileCache {
+
+    private val cache = new ConcurrentHashMap[String, Seq[(ClassFile, URL)]]()
+
+    /**
+     * Returns the interface-only class files of all jars and jmods below `JREPath`.
+     */
+    def apply(JREPath: String): Seq[(ClassFile, URL)] = {
+        cache.computeIfAbsent(
+            new File(JREPath).getCanonicalPath,
+            path => Project.JavaLibraryClassFileReader.AllClassFiles(JRELocation.getAllJREJars(path)).toSeq
+        )
+    }
+
+    /**
+     * Drops all cached JREs.
+     */
+    def clear(): Unit = cache.clear()
+}
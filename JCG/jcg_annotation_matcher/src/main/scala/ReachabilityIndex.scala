@@ -0,0 +1,60 @@
+import java.util.BitSet
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Answers whether there is a path in a computed call graph from one method to another.
+ *
+ * The traversal works on the method ids and the target arrays of an [[IdCallGraph]]. The methods
+ * reachable from a source are computed by a single breadth-first traversal and memoized, so that
+ * all queries for the same source share it.
+ *
+ * A method counts as reachable from `source` only if it is the target of at least one edge on a
+ * path from `source`; in particular, `source` itself is only reachable via a cycle.
+ */
+class ReachabilityIndex(callGraph: IdCallGraph) {
+
+    private val methods = callGraph.methods
+
+    private val reachableFrom = new ConcurrentHashMap[Int, BitSet]()
+
+    /**
+     * Is there a path in the call graph from the `source` to the `target`?
+     */
+    def isReachable(source: Method, target: Method): Boolean = {
+        val s = methods.idOf(source)
+        val t = methods.idOf(target)
+        s >= 0 && t >= 0 && reachableFrom.computeIfAbsent(s, traverse).get(t)
+    }
+
+    private def traverse(source: Int): BitSet = {
+        val reached = new BitSet(methods.size)
+        val queue = new Array[Int](methods.size)
+        var head = 0
+        var tail = 0
+        queue(tail) = source
+        tail += 1
+
+        while (head < tail) {
+            val node = callGraph.node(queue(head))
+            head += 1
+            if (node >= 0) {
+                for {
+                    callSite ← callGraph.callSites(node)
+                    i ← callGraph.targetRange(callSite)
+                } {
+                    val target = callGraph.target(i)
+                    if (!reached.get(target)) {
+                        reached.set(target)
+                        // the source has already been expanded
+                        if (target != source) {
+                            queue(tail) = target
+                            tail += 1
+                        }
+                    }
+                }
+            }
+        }
+
+        reached
+    }
+}
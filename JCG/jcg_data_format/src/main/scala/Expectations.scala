@@ -0,0 +1,101 @@
+import java.io.File
+import java.io.FileInputStream
+import java.io.PrintWriter
+
+import play.api.libs.json.Json
+import play.api.libs.json.Reads
+import play.api.libs.json.Writes
+
+/**
+ * The call graph expectations of a test case, i.e., the contents of all
+ * `lib.annotations.callgraph.DirectCall` and `IndirectCall` annotations of its target, extracted
+ * once after compiling it, so that matching a call graph does not require to analyze the
+ * bytecode.
+ *
+ * The annotated methods are listed in the order in which they are checked.
+ */
+case class Expectations(annotatedMethods: Seq[AnnotatedMethod])
+
+object Expectations {
+    implicit val expectationsReads: Reads[Expectations] = Json.reads[Expectations]
+
+    implicit val expectationsWrites: Writes[Expectations] = Json.writes[Expectations]
+
+    val FileSuffix = ".expectations.json"
+
+    /**
+     * The expectations file belonging to the given test jar, e.g., `CFNE1.expectations.json`
+     * for `CFNE1.jar`.
+     */
+    def file(target: File): File = {
+        new File(target.getParentFile, target.getName.stripSuffix(".jar") + FileSuffix)
+    }
+
+    /**
+     * Reads the expectations of the given test jar, if they exist and are not older than the jar.
+     */
+    def read(target: File): Option[Expectations] = {
+        val expectationsFile = file(target)
+        if (!expectationsFile.isFile || expectationsFile.lastModified() < target.lastModified()) {
+            None
+        } else {
+            val in = new FileInputStream(expectationsFile)
+            try {
+                Some(Json.parse(in).validate[Expectations].get)
+            } finally {
+                in.close()
+            }
+        }
+    }
+
+    def write(expectations: Expectations, target: File): Unit = {
+        val pw = new PrintWriter(file(target), "UTF-8")
+        try {
+            pw.write(Json.stringify(Json.toJson(expectations)))
+        } finally {
+            pw.close()
+        }
+    }
+}
+
+/**
+ * A method with call annotations. Every element of `annotations` corresponds to one annotation of
+ * the method; a repeatable wrapper, e.g. `DirectCalls`, contributes all of its elements at once.
+ */
+case class AnnotatedMethod(method: Method, annotations: Seq[ExpectedCalls])
+
+object AnnotatedMethod {
+    implicit val annotatedMethodReads: Reads[AnnotatedMethod] = Json.reads[AnnotatedMethod]
+
+    implicit val annotatedMethodWrites: Writes[AnnotatedMethod] = Json.writes[AnnotatedMethod]
+}
+
+/**
+ * The direct and indirect calls specified by a single annotation.
+ */
+case class ExpectedCalls(directCalls: Seq[ExpectedCall], indirectCalls: Seq[ExpectedCall])
+
+object ExpectedCalls {
+    implicit val expectedCallsReads: Reads[ExpectedCalls] = Json.reads[ExpectedCalls]
+
+    implicit val expectedCallsWrites: Writes[ExpectedCalls] = Json.writes[ExpectedCalls]
+}
+
+/**
+ * A single expected call. The types are given in JVM notation, `returnType` is `V` if it was not
+ * specified and `line` is -1 if it was not specified.
+ */
+case class ExpectedCall(
+    name:              String,
+    line:              Int,
+    returnType:        String,
+    parameterTypes:    List[String],
+    resolvedTargets:   List[String],
+    prohibitedTargets: List[String]
+)
+
+object ExpectedCall {
+    implicit val expectedCallReads: Reads[ExpectedCall] = Json.reads[ExpectedCall]
+
+    implicit val expectedCallWrites: Writes[ExpectedCall] = Json.writes[ExpectedCall]
+}
@@ -0,0 +1,169 @@
+import java.util.Arrays
+import scala.collection.immutable.ArraySeq
+import scala.collection.mutable
+
+/**
+ * A read-only view of a call graph in which methods are represented by their ids in a
+ * [[MethodTable]] and call sites and targets are stored in int arrays.
+ *
+ * The graph has the semantics of `ReachableMethods.toMap`: every reachable method is a node, even
+ * if it occurs in several entries of the input, and holds the distinct call sites of all of them.
+ * The targets of a call site are distinct and sorted by id. Nodes and call sites are numbered in
+ * the order of their first occurrence in the input; the call sites of node `n` are
+ * `callSites(n)` and the targets of call site `c` are `target(i)` for `i` in `targetRange(c)`.
+ *
+ * Graphs built with the same table can be compared by method id.
+ */
+class IdCallGraph private (
+        val methods:     MethodTable,
+        nodeMethods:     Array[Int],
+        nodesByMethod:   Array[Int],
+        callSiteOffsets: Array[Int],
+        declaredTargets: Array[Int],
+        lines:           Array[Int],
+        pcs:             Array[Int],
+        targetOffsets:   Array[Int],
+        targets:         Array[Int]
+) {
+
+    def nodeCount: Int = nodeMethods.length
+
+    def callSiteCount: Int = declaredTargets.length
+
+    def edgeCount: Int = targets.length
+
+    /**
+     * The id of the reachable method of `node`.
+     */
+    def method(node: Int): Int = nodeMethods(node)
+
+    /**
+     * The node of the method with the given id, or -1 if the method is not reachable.
+     */
+    def node(methodId: Int): Int =
+        if (methodId >= 0 && methodId < nodesByMethod.length) nodesByMethod(methodId) else -1
+
+    def isReachable(methodId: Int): Boolean = node(methodId) >= 0
+
+    def isReachable(method: Method): Boolean = isReachable(methods.idOf(method))
+
+    def callSites(node: Int): Range = callSiteOffsets(node) until callSiteOffsets(node + 1)
+
+    def declaredTarget(callSite: Int): Int = declaredTargets(callSite)
+
+    def line(callSite: Int): Int = lines(callSite)
+
+    def pc(callSite: Int): Option[Int] =
+        if (pcs(callSite) == IdCallGraph.NoPc) None else Some(pcs(callSite))
+
+    /**
+     * The pc of `callSite`, or `default` if it has none; unlike [[pc]], it allocates nothing.
+     */
+    def pcOrElse(callSite: Int, default: Int): Int =
+        if (pcs(callSite) == IdCallGraph.NoPc) default else pcs(callSite)
+
+    def targetRange(callSite: Int): Range = targetOffsets(callSite) until targetOffsets(callSite + 1)
+
+    def targetCount(callSite: Int): Int = targetOffsets(callSite + 1) - targetOffsets(callSite)
+
+    def target(i: Int): Int = targets(i)
+
+    /**
+     * Whether the method with the given id is a target of `callSite`.
+     */
+    def hasTarget(callSite: Int, methodId: Int): Boolean =
+        Arrays.binarySearch(targets, targetOffsets(callSite), targetOffsets(callSite + 1), methodId) >= 0
+}
+
+object IdCallGraph {
+
+    // the pc of call sites without one
+    private val NoPc = Int.MinValue
+
+    /**
+     * Builds the view of `reachableMethods`, using and extending `methods`.
+     */
+    def apply(reachableMethods: ReachableMethods, methods: MethodTable = new MethodTable): IdCallGraph = {
+        val builder = new Builder(methods)
+        for (reachableMethod <- reachableMethods.reachableMethods) {
+            builder.beginReachableMethod(reachableMethod.method)
+            for (callSite <- reachableMethod.callSites)
+                builder.callSite(callSite.declaredTarget, callSite.line, callSite.pc, callSite.targets.toSeq)
+            builder.endReachableMethod()
+        }
+        builder.result()
+    }
+
+    private case class Site(declaredTarget: Int, line: Int, pc: Int, targets: ArraySeq[Int])
+
+    /**
+     * Builds an [[IdCallGraph]] from the call graph reported to it, e.g., while it is read by
+     * `ReachableMethodsReader.visit`, without materializing the [[ReachableMethods]].
+     */
+    class Builder(methods: MethodTable) extends ReachableMethodsVisitor {
+        private val sites = mutable.LinkedHashMap.empty[Int, mutable.LinkedHashSet[Site]]
+        private var current: mutable.LinkedHashSet[Site] = _
+
+        override def beginReachableMethod(method: Method): Unit = {
+            current = sites.getOrElseUpdate(methods.id(method), mutable.LinkedHashSet.empty)
+        }
+
+        override def callSite(declaredTarget: Method, line: Int, pc: Option[Int], targets: collection.Seq[Method]): Unit = {
+            val targetIds = new Array[Int](targets.size)
+            var i = 0
+            for (target <- targets) {
+                targetIds(i) = methods.id(target)
+                i += 1
+            }
+            Arrays.sort(targetIds)
+            // removes duplicates, which are adjacent after sorting
+            var distinct = 0
+            i = 0
+            while (i < targetIds.length) {
+                if (distinct == 0 || targetIds(distinct - 1) != targetIds(i)) {
+                    targetIds(distinct) = targetIds(i)
+                    distinct += 1
+                }
+                i += 1
+            }
+            val distinctIds = if (distinct == targetIds.length) targetIds else Arrays.copyOf(targetIds, distinct)
+            current += Site(methods.id(declaredTarget), line, pc.getOrElse(NoPc), ArraySeq.unsafeWrapArray(distinctIds))
+        }
+
+        def result(): IdCallGraph = {
+            val nodeMethods = sites.keysIterator.toArray
+            val nodesByMethod = Array.fill(methods.size)(-1)
+            for (node <- nodeMethods.indices)
+                nodesByMethod(nodeMethods(node)) = node
+
+            val callSiteCount = sites.valuesIterator.map(_.size).sum
+            val callSiteOffsets = new Array[Int](nodeMethods.length + 1)
+            val declaredTargets = new Array[Int](callSiteCount)
+            val lines = new Array[Int](callSiteCount)
+            val pcs = new Array[Int](callSiteCount)
+            val targetOffsets = new Array[Int](callSiteCount + 1)
+            val targets = new Array[Int](sites.valuesIterator.flatMap(_.iterator).map(_.targets.size).sum)
+
+            var node = 0
+            var callSite = 0
+            var target = 0
+            for (nodeSites <- sites.valuesIterator) {
+                for (site <- nodeSites) {
+                    declaredTargets(callSite) = site.declaredTarget
+                    lines(callSite) = site.line
+                    pcs(callSite) = site.pc
+                    site.targets.copyToArray(targets, target)
+                    target += site.targets.size
+                    callSite += 1
+                    targetOffsets(callSite) = target
+                }
+                node += 1
+                callSiteOffsets(node) = callSite
+            }
+
+            new IdCallGraph(
+                methods, nodeMethods, nodesByMethod, callSiteOffsets, declaredTargets, lines, pcs, targetOffsets, targets
+            )
+        }
+    }
+}
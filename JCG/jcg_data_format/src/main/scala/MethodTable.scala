@@ -0,0 +1,55 @@
+import scala.collection.mutable
+
+/**
+ * Interns [[Method]]s: every distinct method gets a dense id, counting from 0, and one canonical
+ * instance, whose strings and parameter lists are shared with the other canonical methods.
+ *
+ * Call graphs that use the same table, see [[IdCallGraph]], can compare methods by their ids.
+ * Adding methods is not thread-safe; once all methods are added, the table can be read
+ * concurrently.
+ */
+class MethodTable {
+
+    private val ids = mutable.HashMap.empty[Method, Int]
+    private val methods = mutable.ArrayBuffer.empty[Method]
+    private val strings = mutable.HashMap.empty[String, String]
+    private val parameterLists = mutable.HashMap.empty[List[String], List[String]]
+
+    /**
+     * The id of `method`, which is added if it is not in the table yet.
+     */
+    def id(method: Method): Int = ids.getOrElse(method, {
+        val canonical = Method(
+            intern(method.name),
+            intern(method.declaringClass),
+            intern(method.returnType),
+            parameterLists.getOrElseUpdate(method.parameterTypes, method.parameterTypes.map(intern))
+        )
+        val id = methods.size
+        methods += canonical
+        ids(canonical) = id
+        id
+    })
+
+    /**
+     * The id of `method`, or -1 if it is not in the table.
+     */
+    def idOf(method: Method): Int = ids.getOrElse(method, -1)
+
+    /**
+     * The canonical instance of the method with the given id.
+     */
+    def apply(id: Int): Method = methods(id)
+
+    /**
+     * The canonical instance of `method`, which is added if it is not in the table yet.
+     */
+    def canonical(method: Method): Method = methods(id(method))
+
+    /**
+     * The number of methods; all ids are smaller.
+     */
+    def size: Int = methods.size
+
+    private def intern(string: String): String = strings.getOrElseUpdate(string, string)
+}
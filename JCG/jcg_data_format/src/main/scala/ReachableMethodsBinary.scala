@@ -0,0 +1,222 @@
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.charset.StandardCharsets
+import scala.collection.mutable
+
+/**
+ * A compact binary encoding of [[ReachableMethods]], an alternative to the JSON format of
+ * `ReachableMethods.reachableMethodsWrites` for large, e.g., JDK-inclusive, call graphs.
+ *
+ * Instead of repeating every [[Method]] at each of its uses, the encoding consists of
+ *  - the magic bytes [[Magic]] and a version byte,
+ *  - a table of all distinct strings,
+ *  - a table of all distinct methods, whose name, declaring class, return type and parameter
+ *    types refer to the string table, and
+ *  - the reachable methods, whose call sites refer to their declared target and their targets
+ *    by index into the method table.
+ *
+ * All counts, indices and lengths are unsigned LEB128 variable-length integers; line numbers are
+ * zig-zag encoded, as they may be -1, and the pc is stored incremented by one, with 0 for `None`.
+ * Strings are UTF-8 encoded. Reading shares one [[Method]] instance per entry of the method table.
+ */
+object ReachableMethodsBinary {
+
+    /**
+     * The first bytes of every binary call graph: `JCGB`.
+     */
+    val Magic: Array[Byte] = "JCGB".getBytes(StandardCharsets.US_ASCII)
+
+    val Version: Byte = 1
+
+    /**
+     * Writes `reachableMethods` to `out`, which is neither flushed nor closed.
+     */
+    def write(reachableMethods: ReachableMethods, out: OutputStream): Unit = {
+        val strings = new Interner[String]
+        val methods = new Interner[Method]
+        def intern(method: Method): Unit = {
+            if (methods.add(method)) {
+                strings.add(method.name)
+                strings.add(method.declaringClass)
+                strings.add(method.returnType)
+                method.parameterTypes.foreach(strings.add)
+            }
+        }
+        for (reachableMethod <- reachableMethods.reachableMethods) {
+            intern(reachableMethod.method)
+            for (callSite <- reachableMethod.callSites) {
+                intern(callSite.declaredTarget)
+                callSite.targets.foreach(intern)
+            }
+        }
+
+        val data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16))
+        data.write(Magic)
+        data.writeByte(Version)
+
+        writeVarInt(strings.size, data)
+        for (string <- strings.values) {
+            val bytes = string.getBytes(StandardCharsets.UTF_8)
+            writeVarInt(bytes.length, data)
+            data.write(bytes)
+        }
+
+        writeVarInt(methods.size, data)
+        for (method <- methods.values) {
+            writeVarInt(strings.id(method.name), data)
+            writeVarInt(strings.id(method.declaringClass), data)
+            writeVarInt(strings.id(method.returnType), data)
+            writeVarInt(method.parameterTypes.size, data)
+            method.parameterTypes.foreach(t => writeVarInt(strings.id(t), data))
+        }
+
+        writeVarInt(reachableMethods.reachableMethods.size, data)
+        for (reachableMethod <- reachableMethods.reachableMethods) {
+            writeVarInt(methods.id(reachableMethod.method), data)
+            writeVarInt(reachableMethod.callSites.size, data)
+            for (callSite <- reachableMethod.callSites) {
+                writeVarInt(methods.id(callSite.declaredTarget), data)
+                writeVarInt((callSite.line << 1) ^ (callSite.line >> 31), data)
+                writeVarInt(callSite.pc.fold(0)(_ + 1), data)
+                writeVarInt(callSite.targets.size, data)
+                callSite.targets.foreach(t => writeVarInt(methods.id(t), data))
+            }
+        }
+        data.flush()
+    }
+
+    /**
+     * Reads a call graph written by [[write]] from `in`, which is not closed.
+     */
+    def read(in: InputStream): ReachableMethods = {
+        val builder = new ReachableMethodsBuilder
+        visit(in, builder)
+        builder.result()
+    }
+
+    /**
+     * Reports the call graph written by [[write]] in `in`, which is not closed, to `visitor`.
+     *
+     * @throws IOException If `in` does not start with [[Magic]], has an unknown version or ends
+     *                     prematurely.
+     */
+    def visit(in: InputStream, visitor: ReachableMethodsVisitor): Unit = {
+        val data = new DataInputStream(new BufferedInputStream(in, 1 << 16))
+        val magic = new Array[Byte](Magic.length)
+        data.readFully(magic)
+        if (!magic.sameElements(Magic))
+            throw new IOException("not a binary call graph")
+        val version = data.readByte()
+        if (version != Version)
+            throw new IOException(s"unsupported binary call graph version $version")
+
+        val strings = Array.fill(readVarInt(data)) {
+            val bytes = new Array[Byte](readVarInt(data))
+            data.readFully(bytes)
+            new String(bytes, StandardCharsets.UTF_8)
+        }
+
+        val methods = Array.fill(readVarInt(data)) {
+            val name = strings(readVarInt(data))
+            val declaringClass = strings(readVarInt(data))
+            val returnType = strings(readVarInt(data))
+            val parameterTypes = List.fill(readVarInt(data))(strings(readVarInt(data)))
+            Method(name, declaringClass, returnType, parameterTypes)
+        }
+
+        val targets = mutable.ArrayBuffer.empty[Method]
+        var remaining = readVarInt(data)
+        while (remaining > 0) {
+            visitor.beginReachableMethod(methods(readVarInt(data)))
+            var callSiteCount = readVarInt(data)
+            while (callSiteCount > 0) {
+                val declaredTarget = methods(readVarInt(data))
+                val zigZagLine = readVarInt(data)
+                val line = (zigZagLine >>> 1) ^ -(zigZagLine & 1)
+                val pc = readVarInt(data)
+                targets.clear()
+                var targetCount = readVarInt(data)
+                while (targetCount > 0) {
+                    targets += methods(readVarInt(data))
+                    targetCount -= 1
+                }
+                visitor.callSite(declaredTarget, line, if (pc == 0) None else Some(pc - 1), targets)
+                callSiteCount -= 1
+            }
+            visitor.endReachableMethod()
+            remaining -= 1
+        }
+    }
+
+    /**
+     * Tells whether `in` starts with [[Magic]] without consuming any bytes; `in` must support
+     * `mark`, e.g., a `BufferedInputStream`.
+     */
+    def isBinary(in: InputStream): Boolean = {
+        require(in.markSupported(), "the stream must support mark")
+        in.mark(Magic.length)
+        try {
+            val header = in.readNBytes(Magic.length)
+            header.sameElements(Magic)
+        } finally {
+            in.reset()
+        }
+    }
+
+    private def writeVarInt(value: Int, out: DataOutputStream): Unit = {
+        var remaining = value
+        while ((remaining & ~0x7F) != 0) {
+            out.writeByte((remaining & 0x7F) | 0x80)
+            remaining >>>= 7
+        }
+        out.writeByte(remaining)
+    }
+
+    private def readVarInt(in: DataInputStream): Int = {
+        var result = 0
+        var shift = 0
+        var b = 0
+        do {
+            if (shift > 28)
+                throw new IOException("malformed variable-length integer")
+            b = in.read()
+            if (b < 0)
+                throw new EOFException()
+            result |= (b & 0x7F) << shift
+            shift += 7
+        } while ((b & 0x80) != 0)
+        result
+    }
+
+    /**
+     * Assigns consecutive ids to distinct values in the order they are added.
+     */
+    private class Interner[T] {
+        private val ids = mutable.HashMap.empty[T, Int]
+        private val buffer = mutable.ArrayBuffer.empty[T]
+
+        /**
+         * Adds `value`; returns whether it was new.
+         */
+        def add(value: T): Boolean = {
+            if (ids.contains(value)) false
+            else {
+                ids(value) = buffer.size
+                buffer += value
+                true
+            }
+        }
+
+        def id(value: T): Int = ids(value)
+
+        def size: Int = buffer.size
+
+        def values: Iterable[T] = buffer
+    }
+}
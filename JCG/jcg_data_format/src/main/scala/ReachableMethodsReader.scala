@@ -0,0 +1,223 @@
+import java.io.InputStream
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.core.JsonParseException
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import scala.collection.mutable
+
+/**
+ * Receives the contents of a call graph, see [[ReachableMethodsReader.visit]]. Every reachable
+ * method is reported by [[beginReachableMethod]], followed by its call sites and
+ * [[endReachableMethod]]. Methods are reported as shared instances, i.e., equal methods are
+ * usually the same object.
+ */
+trait ReachableMethodsVisitor {
+
+    def beginReachableMethod(method: Method): Unit = {}
+
+    /**
+     * Reports a call site of the current method. `targets` may be reused after the call returns
+     * and must be copied if it is kept; it may contain duplicates if the input does.
+     */
+    def callSite(declaredTarget: Method, line: Int, pc: Option[Int], targets: collection.Seq[Method]): Unit = {}
+
+    def endReachableMethod(): Unit = {}
+}
+
+/**
+ * Builds the [[ReachableMethods]] reported to it.
+ */
+class ReachableMethodsBuilder extends ReachableMethodsVisitor {
+    private val reachableMethods = Set.newBuilder[ReachableMethod]
+    private val callSites = Set.newBuilder[CallSite]
+    private var method: Method = _
+
+    override def beginReachableMethod(method: Method): Unit = {
+        this.method = method
+        callSites.clear()
+    }
+
+    override def callSite(declaredTarget: Method, line: Int, pc: Option[Int], targets: collection.Seq[Method]): Unit = {
+        callSites += CallSite(declaredTarget, line, pc, targets.toSet)
+    }
+
+    override def endReachableMethod(): Unit = {
+        reachableMethods += ReachableMethod(method, callSites.result())
+    }
+
+    def result(): ReachableMethods = ReachableMethods(reachableMethods.result())
+}
+
+/**
+ * Reads call graphs in the JSON format of `ReachableMethods.reachableMethodsReads` with a
+ * streaming parser, without building a JSON tree first. [[read]] builds the [[ReachableMethods]]
+ * directly; [[visit]] only reports the contents to a [[ReachableMethodsVisitor]], so that
+ * statistics can be computed without keeping the call graph in memory.
+ *
+ * The accepted documents are the same as for `reachableMethodsReads`: fields may appear in any
+ * order, unknown fields are ignored, and `pc` may be missing or `null`. Equal strings and methods
+ * are shared within one document.
+ */
+object ReachableMethodsReader {
+
+    private val factory = new JsonFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE)
+
+    /**
+     * Reads the call graph from `in`, which is not closed.
+     */
+    def read(in: InputStream): ReachableMethods = {
+        val builder = new ReachableMethodsBuilder
+        visit(in, builder)
+        builder.result()
+    }
+
+    /**
+     * Reports the call graph in `in`, which is not closed, to `visitor`.
+     *
+     * @throws JsonParseException If `in` is not a valid call graph.
+     */
+    def visit(in: InputStream, visitor: ReachableMethodsVisitor): Unit = {
+        val parser = factory.createParser(in)
+        try {
+            new Reader(parser, visitor).document()
+        } finally {
+            parser.close()
+        }
+    }
+
+    private class Reader(parser: JsonParser, visitor: ReachableMethodsVisitor) {
+        private val strings = mutable.HashMap.empty[String, String]
+        private val methods = mutable.HashMap.empty[Method, Method]
+        private val targets = mutable.ArrayBuffer.empty[Method]
+        // the call sites that precede the method of the current reachable method in the document
+        private val early = mutable.ArrayBuffer.empty[CallSite]
+
+        def document(): Unit = {
+            expect(parser.nextToken(), JsonToken.START_OBJECT)
+            var found = false
+            while (nextField()) parser.getCurrentName match {
+                case "reachableMethods" =>
+                    found = true
+                    expect(parser.nextToken(), JsonToken.START_ARRAY)
+                    while (parser.nextToken() != JsonToken.END_ARRAY) reachableMethod()
+                case _ =>
+                    skipValue()
+            }
+            if (!found) missing("reachableMethods")
+        }
+
+        private def reachableMethod(): Unit = {
+            expect(parser.currentToken(), JsonToken.START_OBJECT)
+            var method: Method = null
+            var hasCallSites = false
+            early.clear()
+            while (nextField()) parser.getCurrentName match {
+                case "method" =>
+                    parser.nextToken()
+                    method = readMethod()
+                    visitor.beginReachableMethod(method)
+                    early.foreach { cs => visitor.callSite(cs.declaredTarget, cs.line, cs.pc, cs.targets.toSeq) }
+                case "callSites" =>
+                    hasCallSites = true
+                    expect(parser.nextToken(), JsonToken.START_ARRAY)
+                    while (parser.nextToken() != JsonToken.END_ARRAY) callSite(method)
+                case _ =>
+                    skipValue()
+            }
+            if (method == null) missing("method")
+            if (!hasCallSites) missing("callSites")
+            visitor.endReachableMethod()
+        }
+
+        private def callSite(method: Method): Unit = {
+            expect(parser.currentToken(), JsonToken.START_OBJECT)
+            var declaredTarget: Method = null
+            var line = 0
+            var hasLine = false
+            var pc: Option[Int] = None
+            var hasTargets = false
+            targets.clear()
+            while (nextField()) parser.getCurrentName match {
+                case "declaredTarget" =>
+                    parser.nextToken()
+                    declaredTarget = readMethod()
+                case "line" =>
+                    expect(parser.nextToken(), JsonToken.VALUE_NUMBER_INT)
+                    line = parser.getIntValue
+                    hasLine = true
+                case "pc" =>
+                    if (parser.nextToken() != JsonToken.VALUE_NULL) {
+                        expect(parser.currentToken(), JsonToken.VALUE_NUMBER_INT)
+                        pc = Some(parser.getIntValue)
+                    }
+                case "targets" =>
+                    hasTargets = true
+                    expect(parser.nextToken(), JsonToken.START_ARRAY)
+                    while (parser.nextToken() != JsonToken.END_ARRAY) targets += readMethod()
+                case _ =>
+                    skipValue()
+            }
+            if (declaredTarget == null) missing("declaredTarget")
+            if (!hasLine) missing("line")
+            if (!hasTargets) missing("targets")
+
+            if (method != null) visitor.callSite(declaredTarget, line, pc, targets)
+            else early += CallSite(declaredTarget, line, pc, targets.toSet)
+        }
+
+        private def readMethod(): Method = {
+            expect(parser.currentToken(), JsonToken.START_OBJECT)
+            var name: String = null
+            var declaringClass: String = null
+            var returnType: String = null
+            var parameterTypes: List[String] = null
+            while (nextField()) parser.getCurrentName match {
+                case "name"           => name = readString()
+                case "declaringClass" => declaringClass = readString()
+                case "returnType"     => returnType = readString()
+                case "parameterTypes" =>
+                    expect(parser.nextToken(), JsonToken.START_ARRAY)
+                    val types = List.newBuilder[String]
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        expect(parser.currentToken(), JsonToken.VALUE_STRING)
+                        types += intern(parser.getText)
+                    }
+                    parameterTypes = types.result()
+                case _ =>
+                    skipValue()
+            }
+            if (name == null) missing("name")
+            if (declaringClass == null) missing("declaringClass")
+            if (returnType == null) missing("returnType")
+            if (parameterTypes == null) missing("parameterTypes")
+
+            val method = Method(name, declaringClass, returnType, parameterTypes)
+            methods.getOrElseUpdate(method, method)
+        }
+
+        private def readString(): String = {
+            expect(parser.nextToken(), JsonToken.VALUE_STRING)
+            intern(parser.getText)
+        }
+
+        private def intern(string: String): String = strings.getOrElseUpdate(string, string)
+
+        /**
+         * Moves to the next field name of the current object; returns `false` at its end.
+         */
+        private def nextField(): Boolean = parser.nextToken() == JsonToken.FIELD_NAME
+
+        private def skipValue(): Unit = {
+            parser.nextToken()
+            parser.skipChildren()
+        }
+
+        private def expect(actual: JsonToken, expected: JsonToken): Unit = {
+            if (actual != expected)
+                throw new JsonParseException(parser, s"expected $expected but found $actual")
+        }
+
+        private def missing(field: String): Nothing =
+            throw new JsonParseException(parser, s"missing field '$field'")
+    }
+}
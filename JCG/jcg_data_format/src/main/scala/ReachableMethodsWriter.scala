@@ -0,0 +1,197 @@
+import java.io.Writer
+
+/**
+ * Streams [[ReachableMethods]] to a `Writer` in the JSON format read by
+ * `ReachableMethods.reachableMethodsReads`, without building a JSON AST first.
+ *
+ * Adapters that already hold a [[ReachableMethods]] instance can use [[write]]; adapters that
+ * produce the call graph incrementally call [[beginReachableMethod]], [[writeCallSite]] and
+ * [[endReachableMethod]] for each method and finish with [[close]]. The output is compact unless
+ * `pretty` is set, in which case it is indented by two spaces per level.
+ *
+ * The writer does not close or flush the underlying `Writer`.
+ */
+class ReachableMethodsWriter(out: Writer, pretty: Boolean = false) {
+
+    private var depth = 0
+    private var firstMethod = true
+    private var firstCallSite = true
+    private var closed = false
+
+    beginContainer('{')
+    field("reachableMethods")
+    beginContainer('[')
+
+    def writeReachableMethod(reachableMethod: ReachableMethod): Unit = {
+        beginReachableMethod(reachableMethod.method)
+        reachableMethod.callSites.foreach(writeCallSite)
+        endReachableMethod()
+    }
+
+    /**
+     * Starts the entry of `method`; its call sites follow until [[endReachableMethod]].
+     */
+    def beginReachableMethod(method: Method): Unit = {
+        separator(firstMethod)
+        firstMethod = false
+        firstCallSite = true
+        beginContainer('{')
+        field("method")
+        writeMethod(method)
+        out.write(',')
+        field("callSites")
+        beginContainer('[')
+    }
+
+    def writeCallSite(callSite: CallSite): Unit = {
+        writeCallSite(callSite.declaredTarget, callSite.line, callSite.pc, callSite.targets)
+    }
+
+    /**
+     * Writes a call site of the current method; `pc` is omitted if it is `None`.
+     */
+    def writeCallSite(
+        declaredTarget: Method,
+        line:           Int,
+        pc:             Option[Int],
+        targets:        Iterable[Method]
+    ): Unit = {
+        separator(firstCallSite)
+        firstCallSite = false
+        beginContainer('{')
+        field("declaredTarget")
+        writeMethod(declaredTarget)
+        out.write(',')
+        field("line")
+        out.write(Integer.toString(line))
+        pc.foreach { pc =>
+            out.write(',')
+            field("pc")
+            out.write(Integer.toString(pc))
+        }
+        out.write(',')
+        field("targets")
+        beginContainer('[')
+        var first = true
+        for (target <- targets) {
+            separator(first)
+            first = false
+            writeMethod(target)
+        }
+        endContainer(']', first)
+        endContainer('}', isEmpty = false)
+    }
+
+    def endReachableMethod(): Unit = {
+        endContainer(']', firstCallSite)
+        endContainer('}', isEmpty = false)
+    }
+
+    /**
+     * Terminates the JSON document; has no effect if it has already been terminated.
+     */
+    def close(): Unit = {
+        if (!closed) {
+            closed = true
+            endContainer(']', firstMethod)
+            endContainer('}', isEmpty = false)
+            if (pretty) out.write('\n')
+        }
+    }
+
+    private def writeMethod(method: Method): Unit = {
+        beginContainer('{')
+        field("name")
+        ReachableMethodsWriter.writeString(method.name, out)
+        out.write(',')
+        field("declaringClass")
+        ReachableMethodsWriter.writeString(method.declaringClass, out)
+        out.write(',')
+        field("returnType")
+        ReachableMethodsWriter.writeString(method.returnType, out)
+        out.write(',')
+        field("parameterTypes")
+        out.write('[')
+        var first = true
+        for (parameterType <- method.parameterTypes) {
+            if (first) first = false
+            else out.write(if (pretty) ", " else ",")
+            ReachableMethodsWriter.writeString(parameterType, out)
+        }
+        out.write(']')
+        endContainer('}', isEmpty = false)
+    }
+
+    private def field(name: String): Unit = {
+        if (pretty) newLine()
+        out.write('"')
+        out.write(name)
+        out.write(if (pretty) "\" : " else "\":")
+    }
+
+    private def separator(first: Boolean): Unit = {
+        if (!first) out.write(',')
+        if (pretty) newLine()
+    }
+
+    private def beginContainer(bracket: Char): Unit = {
+        out.write(bracket)
+        depth += 1
+    }
+
+    private def endContainer(bracket: Char, isEmpty: Boolean): Unit = {
+        depth -= 1
+        if (pretty && !isEmpty) newLine()
+        out.write(bracket)
+    }
+
+    private def newLine(): Unit = {
+        out.write('\n')
+        var i = 0
+        while (i < depth) {
+            out.write("  ")
+            i += 1
+        }
+    }
+}
+
+object ReachableMethodsWriter {
+
+    /**
+     * Writes the complete call graph to `out`.
+     */
+    def write(reachableMethods: ReachableMethods, out: Writer, pretty: Boolean = false): Unit = {
+        val writer = new ReachableMethodsWriter(out, pretty)
+        reachableMethods.reachableMethods.foreach(writer.writeReachableMethod)
+        writer.close()
+    }
+
+    /**
+     * Writes `value` as JSON string literal, escaping quotes, backslashes and control characters.
+     */
+    def writeString(value: String, out: Writer): Unit = {
+        out.write('"')
+        var start = 0
+        var i = 0
+        while (i < value.length) {
+            val c = value.charAt(i)
+            if (c == '"' || c == '\\' || c < 0x20) {
+                out.write(value, start, i - start)
+                c match {
+                    case '"'  => out.write("\\\"")
+                    case '\\' => out.write("\\\\")
+                    case '\n' => out.write("\\n")
+                    case '\r' => out.write("\\r")
+                    case '\t' => out.write("\\t")
+                    case '\b' => out.write("\\b")
+                    case '\f' => out.write("\\f")
+                    case _    => out.write(f"\\u${c.toInt}%04x")
+                }
+                start = i + 1
+            }
+            i += 1
+        }
+        out.write(value, start, value.length - start)
+        out.write('"')
+    }
+}
@@ -106,28 +106,20 @@ object DynamicJCGAdapter extends JavaTestAdapter {
 
         var edgeCount = 0
         println(reachableMethods.size)
-        output.write(s"""{"reachableMethods":[""")
-        var firstRM = true
+        val cgWriter = new ReachableMethodsWriter(output)
         for {
             rm ← reachableMethods
         } {
-            if (firstRM) {
-                firstRM = false
-            } else {
-                output.write(",")
-            }
-            output.write("{\"method\":")
-            writeMethodObject(rm, output)
-            output.write(",\"callSites\":[")
+            cgWriter.beginReachableMethod(rm)
             if (edges.contains(rm)) {
                 val callSites = edges(rm)
                 edgeCount += callSites.values.foldLeft(0)((v, s) ⇒ v + s.size)
-                writeCallSites(callSites, output)
+                writeCallSites(callSites, cgWriter)
             }
-            output.write("]}")
+            cgWriter.endReachableMethod()
         }
         println(edgeCount)
-        output.write("]}")
+        cgWriter.close()
 
         val after = result.getOrElse(before)
 
@@ -148,53 +140,11 @@ object DynamicJCGAdapter extends JavaTestAdapter {
 
     private def writeCallSites(
         callSites: mutable.Map[(Int, Int), mutable.Set[Method]],
-        out:       Writer
+        out:       ReachableMethodsWriter
     ): Unit = {
-        var firstCS = true
-        for (callSite ← callSites) {
-            if (firstCS) {
-                firstCS = false
-            } else {
-                out.write(",")
-            }
-            writeCallSite(callSite._1, callSite._2, out)
+        val unknownTarget = Method("", "", "", List.empty)
+        for (((pc, line), targets) ← callSites) {
+            out.writeCallSite(unknownTarget, line, Some(pc), targets)
         }
     }
-
-    private def writeCallSite(
-        pcLn:    (Int, Int),
-        targets: mutable.Set[Method],
-        out:     Writer
-    ): Unit = {
-        out.write("{\"declaredTarget\":")
-        writeMethodObject(Method("", "", "", List.empty), out)
-        out.write(",\"line\":")
-        out.write(pcLn._2.toString)
-        out.write(",\"pc\":")
-        out.write(pcLn._1.toString)
-        out.write(",\"targets\":[")
-        var first = true
-        for (tgt ← targets) {
-            if (first) first = false
-            else out.write(",")
-            writeMethodObject(tgt, out)
-        }
-        out.write("]}")
-    }
-
-    private def writeMethodObject(
-        method: Method,
-        out:    Writer
-    ): Unit = {
-        out.write("{\"name\":\"")
-        out.write(method.name)
-        out.write("\",\"declaringClass\":\"")
-        out.write(method.declaringClass)
-        out.write("\",\"returnType\":\"")
-        out.write(method.returnType)
-        out.write("\",\"parameterTypes\":[")
-        if (method.parameterTypes.length > 0)
-            out.write(method.parameterTypes.mkString("\"", "\",\"", "\""))
-        out.write("]}")
-    }
 }
@@ -0,0 +1,105 @@
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.BufferedWriter
+import java.io.EOFException
+import java.io.FileDescriptor
+import java.io.FileOutputStream
+import java.io.FileWriter
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+import java.io.PrintWriter
+import java.io.StringWriter
+import java.lang.management.ManagementFactory
+import java.lang.management.MemoryType
+import scala.jdk.CollectionConverters._
+
+/**
+ * The main class of a worker JVM of a [[WorkerPool]].
+ *
+ * The worker reads [[AdapterWorker.Request]]s from its standard input, runs the requested
+ * adapter and answers each request with an [[AdapterWorker.Response]] on its standard output.
+ * Everything the adapters print is redirected to the standard error stream. The worker exits
+ * once its standard input is closed.
+ */
+object AdapterWorker {
+
+    /**
+     * Asks the worker to serialize the call graph computed by `adapterClass` (the class of the
+     * adapter object) to `cgFile`.
+     */
+    case class Request(
+        adapterClass: String,
+        algorithm:    String,
+        inputDirPath: String,
+        cgFile:       String,
+        options:      Map[String, Any]
+    )
+
+    /**
+     * The result of a [[Request]].
+     *
+     * @param elapsed  The time reported by the adapter, or -1 if it failed.
+     * @param error    The stack trace of the exception thrown by the adapter, if any.
+     * @param usedHeap The heap in use after the run and a garbage collection, in bytes.
+     * @param peakHeap The largest heap committed during the run, in bytes.
+     * @param maxHeap  The maximal heap size of the worker, in bytes.
+     */
+    case class Response(elapsed: Long, error: Option[String], usedHeap: Long, peakHeap: Long, maxHeap: Long)
+
+    def main(args: Array[String]): Unit = {
+        val responses = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)))
+        responses.flush()
+        System.setOut(System.err)
+
+        val requests = new ObjectInputStream(new BufferedInputStream(System.in))
+        Console.withOut(System.err) {
+            var request = nextRequest(requests)
+            while (request.isDefined) {
+                responses.writeObject(run(request.get))
+                responses.flush()
+                responses.reset()
+                request = nextRequest(requests)
+            }
+        }
+    }
+
+    private def nextRequest(requests: ObjectInputStream): Option[Request] = {
+        try {
+            Some(requests.readObject().asInstanceOf[Request])
+        } catch {
+            case _: EOFException => None
+        }
+    }
+
+    private def run(request: Request): Response = {
+        val heapPools = ManagementFactory.getMemoryPoolMXBeans.asScala.filter(_.getType == MemoryType.HEAP)
+        heapPools.foreach(_.resetPeakUsage())
+
+        val (elapsed, error) =
+            try {
+                val adapter = Class.forName(request.adapterClass).getField("MODULE$").get(null).asInstanceOf[TestAdapter]
+                val output = new BufferedWriter(new FileWriter(request.cgFile))
+                try {
+                    val elapsed = adapter.serializeCG(
+                        request.algorithm,
+                        request.inputDirPath,
+                        output,
+                        AdapterOptions.fromMap(request.options)
+                    )
+                    (elapsed, None)
+                } finally {
+                    output.close()
+                }
+            } catch {
+                case e: Throwable =>
+                    val trace = new StringWriter()
+                    e.printStackTrace(new PrintWriter(trace))
+                    (-1L, Some(trace.toString))
+            }
+
+        val peakHeap = heapPools.map(_.getPeakUsage.getCommitted).sum
+        System.gc()
+        val runtime = Runtime.getRuntime
+        Response(elapsed, error, runtime.totalMemory() - runtime.freeMemory(), peakHeap, runtime.maxMemory())
+    }
+}
@@ -0,0 +1,129 @@
+import java.io.BufferedOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.OutputStream
+import java.io.OutputStreamWriter
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+import scala.jdk.CollectionConverters._
+import scala.util.Using
+
+/**
+ * Converts serialized call graphs between the JSON format and the binary format of
+ * [[ReachableMethodsBinary]], and compares the size and the load time of both formats.
+ *
+ * {{{
+ * CallGraphFormat convert <in> <out>
+ * CallGraphFormat compare <cg file | result directory> [repetitions]
+ * }}}
+ *
+ * `convert` reads `in` in either format and writes `out` in the binary format, unless `out` ends
+ * with `.json`; `out` is gzipped if it ends with `.zip` or `.gz`.
+ *
+ * `compare` converts every JSON call graph (`*.json`, or gzipped `*.zip` or `*.gz`) below the
+ * given directory into a temporary binary file, checks that both load to the same call graph, and
+ * prints the sizes and the median load times of both as CSV.
+ */
+object CallGraphFormat {
+
+    def main(args: Array[String]): Unit = args.toList match {
+        case "convert" :: in :: out :: Nil =>
+            convert(new File(in), new File(out))
+        case "compare" :: path :: rest if rest.size <= 1 =>
+            compare(new File(path), rest.headOption.map(_.toInt).getOrElse(3))
+        case _ =>
+            System.err.println("usage: CallGraphFormat convert <in> <out>")
+            System.err.println("       CallGraphFormat compare <cg file | result directory> [repetitions]")
+            sys.exit(1)
+    }
+
+    def convert(in: File, out: File): Unit = {
+        val cg = EvaluationHelper.readCG(in)
+        write(cg, out, binary = !out.getName.endsWith(".json"))
+        println(s"${in.getPath} (${in.length()} bytes) -> ${out.getPath} (${out.length()} bytes)")
+    }
+
+    def write(cg: ReachableMethods, out: File, binary: Boolean): Unit = {
+        val file = new FileOutputStream(out)
+        val stream: OutputStream =
+            if (out.getName.endsWith(".zip") || out.getName.endsWith(".gz"))
+                new GZIPOutputStream(file, 1 << 16)
+            else
+                new BufferedOutputStream(file, 1 << 16)
+        try {
+            if (binary) {
+                ReachableMethodsBinary.write(cg, stream)
+            } else {
+                val writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8)
+                ReachableMethodsWriter.write(cg, writer)
+                writer.flush()
+            }
+        } finally {
+            stream.close()
+        }
+    }
+
+    def compare(path: File, repetitions: Int): Unit = {
+        assert(path.exists(), s"$path does not exist")
+        val cgFiles =
+            if (path.isFile) Seq(path)
+            else Using.resource(Files.walk(path.toPath)) { paths =>
+                paths.iterator().asScala.map(_.toFile).filter(isCallGraph).toSeq.sorted
+            }
+
+        println("file,jsonBytes,binaryBytes,sizeRatio,jsonLoadMillis,binaryLoadMillis,loadRatio")
+        for (cgFile <- cgFiles) {
+            val binaryFile = File.createTempFile("jcg-cg", if (isGzipped(cgFile)) ".bin.gz" else ".bin")
+            try {
+                val cg = EvaluationHelper.readCG(cgFile)
+                write(cg, binaryFile, binary = true)
+                if (EvaluationHelper.readCG(binaryFile) != cg)
+                    throw new IllegalStateException(s"$cgFile changed when converted to the binary format")
+
+                val jsonMillis = medianLoadMillis(cgFile, repetitions)
+                val binaryMillis = medianLoadMillis(binaryFile, repetitions)
+                println(
+                    f"${cgFile.getPath},${cgFile.length()},${binaryFile.length()}," +
+                        f"${binaryFile.length().toDouble / cgFile.length()}%.3f," +
+                        f"$jsonMillis%.1f,$binaryMillis%.1f,${binaryMillis / jsonMillis}%.3f"
+                )
+            } finally {
+                binaryFile.delete()
+            }
+        }
+    }
+
+    private def medianLoadMillis(cgFile: File, repetitions: Int): Double = {
+        val times = (1 to repetitions).map { _ =>
+            val start = System.nanoTime()
+            EvaluationHelper.readCG(cgFile)
+            (System.nanoTime() - start) / 1e6
+        }.sorted
+        times(times.size / 2)
+    }
+
+    /**
+     * Whether `file` is a JSON call graph, i.e., not one of the other JSON reports of a run.
+     */
+    private def isCallGraph(file: File): Boolean = {
+        val name = file.getName
+        file.isFile && (name.endsWith(".json") || isGzipped(file)) && {
+            val in = new FileInputStream(file)
+            try {
+                val header = (if (isGzipped(file)) new GZIPInputStream(in) else in).readNBytes(64)
+                new String(header, StandardCharsets.UTF_8).replaceAll("\\s", "").startsWith("{\"reachableMethods\"")
+            } catch {
+                case _: IOException => false
+            } finally {
+                in.close()
+            }
+        }
+    }
+
+    private def isGzipped(file: File): Boolean =
+        file.getName.endsWith(".zip") || file.getName.endsWith(".gz")
+}
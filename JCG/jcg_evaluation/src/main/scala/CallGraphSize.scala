@@ -1,9 +1,4 @@
 import java.io.File
-import java.io.FileInputStream
-import java.io.InputStreamReader
-import java.util.zip.GZIPInputStream
-
-import play.api.libs.json.Json
 
 /**
  * A small helper to get the size information of computed (serialized) call graphs.
@@ -52,21 +47,32 @@ object CallGraphSize {
     }
 
     def printStatistic(cgFile: File, appPackages: List[String], callGraphName : String = ""): Unit = {
-        val reachableMethods = EvaluationHelper.readCG(cgFile).reachableMethods
+        val statistic = new SizeStatistic(appPackages.map(pkg ⇒ s"L$pkg"))
+        EvaluationHelper.visitCG(cgFile, statistic)
 
-        val appMethods = reachableMethods.count { rm =>
-            val declClass = rm.method.declaringClass
-            appPackages.exists { pkg =>
-                declClass.startsWith(s"L$pkg")
-            }
-        }
+        val outputName = if(callGraphName.isEmpty) cgFile.getName else callGraphName
 
-        val edgeCount = reachableMethods.foldLeft(0){ (acc, rm) =>
-            acc + rm.callSites.foldLeft(0)((acc,cs) => acc + cs.targets.size)
-        }
+        println(s"$outputName - ${statistic.reachableMethods} reachable methods - ${statistic.edges} call graph edges [application methods: ${statistic.appMethods}]")
+    }
 
-        val outputName = if(callGraphName.isEmpty) cgFile.getName else callGraphName
+    /**
+     * Counts the reachable methods and edges while the call graph is read, without keeping it in
+     * memory. Unlike the sets of [[ReachableMethods]], it counts duplicate entries in the input
+     * more than once, which the adapters do not produce.
+     */
+    private class SizeStatistic(appPrefixes: List[String]) extends ReachableMethodsVisitor {
+        var reachableMethods = 0
+        var appMethods = 0
+        var edges = 0
 
-        println(s"$outputName - ${reachableMethods.size} reachable methods - $edgeCount call graph edges [application methods: $appMethods]")
+        override def beginReachableMethod(method: Method): Unit = {
+            reachableMethods += 1
+            if (appPrefixes.exists(method.declaringClass.startsWith))
+                appMethods += 1
+        }
+
+        override def callSite(declaredTarget: Method, line: Int, pc: Option[Int], targets: collection.Seq[Method]): Unit = {
+            edges += targets.size
+        }
     }
 }
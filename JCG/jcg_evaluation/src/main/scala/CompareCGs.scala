@@ -1,9 +1,13 @@
 import java.io.File
-import java.io.FileInputStream
-import java.util
+import java.io.PrintWriter
+import java.util.Arrays
+import java.util.BitSet
+import java.util.Locale
+import java.util.stream.Collectors
+import java.util.stream.IntStream
 
-import play.api.libs.json.Json
 import scala.collection.mutable
+import scala.collection.mutable.ArrayBuffer
 import scala.jdk.CollectionConverters._
 import java.util.{HashSet ⇒ JHashSet}
 
@@ -31,6 +35,9 @@ object CompareCGs {
         var inPackage = ""
         var strict = true
 
+        var matrixPath = ""
+        var outputPath = ""
+
         args.sliding(2, 1).toList.collect {
             case Array("--input1", cg) ⇒
                 assert(cg1Path.isEmpty, "--input1 is specified multiple times")
@@ -54,6 +61,10 @@ object CompareCGs {
                 maxFindings = max.toInt
             case Array("--inPackage", pkg) ⇒
                 inPackage = pkg
+            case Array("--matrix", dir) ⇒
+                matrixPath = dir
+            case Array("--output", dir) ⇒
+                outputPath = dir
         }
 
         args.sliding(1, 1).toList.collect {
@@ -66,8 +77,16 @@ object CompareCGs {
 
         }
 
-        val cg1 = EvaluationHelper.readCG(new File(cg1Path)).toMap
-        val cg2 = EvaluationHelper.readCG(new File(cg2Path)).toMap
+        if (matrixPath.nonEmpty) {
+            val outputDir = new File(if (outputPath.isEmpty) matrixPath else outputPath)
+            writeMatrices(new File(matrixPath), outputDir, inPackage, strict)
+            return
+        }
+
+        val methods = new MethodTable
+        val cg1 = EvaluationHelper.readIdCG(new File(cg1Path), methods)
+        val cg2 = EvaluationHelper.readIdCG(new File(cg2Path), methods)
+        val signatures = signatureIds(methods)
 
         /*
         for {
@@ -83,9 +102,9 @@ object CompareCGs {
          */
 
         if (showMethodPrecisionRecall) {
-            val falsePositive = extractAdditionalMethods(cg2, cg1, inPackage).size
-            val positive = if(inPackage.isEmpty) cg2.size else cg2.keysIterator.count(_.declaringClass.startsWith(inPackage))
-            val truth = if(inPackage.isEmpty) cg1.size else cg1.keysIterator.count(_.declaringClass.startsWith(inPackage))
+            val falsePositive = countAdditionalMethods(cg2, cg1, inPackage)
+            val positive = if(inPackage.isEmpty) cg2.nodeCount else countMethods(cg2, inPackage)
+            val truth = if(inPackage.isEmpty) cg1.nodeCount else countMethods(cg1, inPackage)
             val truePositive = positive - falsePositive
             println(f"Method precision: $truePositive/$positive = ${truePositive.toDouble / positive * 100}%.2f%%")
             println(f"Method recall: $truePositive/$truth = ${truePositive.toDouble / truth * 100}%.2f%%")
@@ -93,7 +112,7 @@ object CompareCGs {
         }
 
         if (showEdgePrecisionRecall) {
-            val falsePositive = countAdditionalEdges(cg2, cg1, inPackage, strict)
+            val falsePositive = countAdditionalEdges(cg2, cg1, inPackage, strict, signatures)
             val positive = edgeCount(cg2, inPackage)
             val truth = edgeCount(cg1, inPackage)
             val truePositive = positive - falsePositive
@@ -110,19 +129,15 @@ object CompareCGs {
             println(additionalReachableMethods2.mkString(" ##### Additional Methods - Input 2 #####\n\n\t", "\n\t", "\n\n"))
         }
 
-        val commonReachableMethods: java.util.HashSet[Method] = if (showCommon || showBoundaries) {
-            val cg1Keys = cg1.keySet.iterator
-            val common = new java.util.HashSet[Method]()
-            while (cg1Keys.hasNext) {
-                val m1 = cg1Keys.next()
-                if (cg2.contains(m1))
-                    common add m1
-            }
-            common
-        } else new util.HashSet[Method]()
+        // the ids of the methods reachable in both call graphs
+        val commonReachableMethods = new BitSet(methods.size)
+        if (showCommon || showBoundaries) {
+            for (node ← 0 until cg1.nodeCount if cg2.isReachable(cg1.method(node)))
+                commonReachableMethods.set(cg1.method(node))
+        }
 
         if (showCommon) {
-            val seq = commonReachableMethods.asScala.toSeq
+            val seq = commonReachableMethods.stream().iterator().asScala.map(methods(_)).toSeq
             println(seq.sortBy(_.declaringClass).take(maxFindings).mkString(" ##### Common Methods #####\n\n\t", "\n\t", "\n\n"))
         }
 
@@ -151,13 +166,14 @@ object CompareCGs {
             println(additional2.mkString(" ##### Additional Calls - Input 2 #####\n\n\t", "\n\t", "\n\n"))
         }
 
-        val sites = cg1.keySet.filter(!cg2.contains(_)).map { m ⇒
-            val css = cg1(m)
+        val sites = (0 until cg1.nodeCount).filter(node ⇒ !cg2.isReachable(cg1.method(node))).map { node ⇒
+            val m = methods(cg1.method(node))
+            val css = cg1.callSites(node)
             if(css.nonEmpty) {
-                val additional = cg1(m).maxBy { cs ⇒
-                    cs.targets.size
+                val additional = css.maxBy { cs ⇒
+                    cg1.targetCount(cs)
                 }
-                (m, additional.pc, additional.targets.size)
+                (m, cg1.pc(additional), cg1.targetCount(additional))
             } else {
                 (m, None, 0)
             }
@@ -166,46 +182,171 @@ object CompareCGs {
         //println(sites.toSeq.sortBy(_._3).takeRight(100).mkString(" #### Impactful Call Sites ####\n\n\t", "\n\t", "\n\n"))
     }
 
-    private def edgeCount(cg: Map[Method, Set[CallSite]], inPackage: String): Int = {
-        cg.foldLeft(0) { (acc, rm) ⇒
-            if(rm._1.declaringClass.startsWith(inPackage))
-                acc + rm._2.foldLeft(0)((acc, cs) ⇒ acc + cs.targets.size)
+    // the names under which the adapters store a call graph, see EvaluationHelper.getOutputDirectory
+    private val CallGraphFileNames = Seq("cg.json", "cg.zip", "cg.gz")
+
+    /**
+     * Compares all call graphs of each project in `resultDir`, stored as
+     * `resultDir/project/framework/algorithm/cg.json`, with each other and writes the method and
+     * edge precision, recall and F1-score of every ordered pair to `outputDir/project-matrix.csv`,
+     * one row per cell of the matrix. The `reference` call graph of a row takes the place of
+     * `--input1` and the `compared` one that of `--input2`.
+     *
+     * The call graphs of a project are read once, into a shared [[MethodTable]], and the pairs are
+     * compared in parallel. Call graphs that cannot be read are skipped with a warning.
+     */
+    private def writeMatrices(resultDir: File, outputDir: File, inPackage: String, strict: Boolean): Unit = {
+        assert(resultDir.isDirectory, s"$resultDir is not a directory")
+        outputDir.mkdirs()
+
+        for (project ← resultDir.listFiles(_.isDirectory).sorted) {
+            val methods = new MethodTable
+            val callGraphs = for {
+                framework ← project.listFiles(_.isDirectory).sorted
+                algorithm ← framework.listFiles(_.isDirectory).sorted
+                cgFile ← CallGraphFileNames.map(new File(algorithm, _)).find(_.isFile)
+                cg ← readForMatrix(cgFile, methods)
+            } yield (s"${framework.getName}/${algorithm.getName}", cg)
+
+            if (callGraphs.length < 2) {
+                println(s"[info] skipping ${project.getName}: fewer than two call graphs")
+            } else {
+                val signatures = signatureIds(methods)
+                val methodCounts = callGraphs.map { case (_, cg) ⇒
+                    if (inPackage.isEmpty) cg.nodeCount else countMethods(cg, inPackage)
+                }
+                val edgeCounts = callGraphs.map { case (_, cg) ⇒ edgeCount(cg, inPackage) }
+
+                val pairs = for {
+                    reference ← callGraphs.indices
+                    compared ← callGraphs.indices if reference != compared
+                } yield (reference, compared)
+
+                val rows = IntStream.range(0, pairs.size).parallel().mapToObj[String] { pair ⇒
+                    val (reference, compared) = pairs(pair)
+                    val referenceCG = callGraphs(reference)._2
+                    val comparedCG = callGraphs(compared)._2
+                    val additionalMethods = countAdditionalMethods(comparedCG, referenceCG, inPackage)
+                    val additionalEdges = countAdditionalEdges(comparedCG, referenceCG, inPackage, strict, signatures)
+                    Seq(
+                        callGraphs(reference)._1,
+                        callGraphs(compared)._1,
+                        metrics(methodCounts(compared) - additionalMethods, additionalMethods, methodCounts(reference)),
+                        metrics(edgeCounts(compared) - additionalEdges, additionalEdges, edgeCounts(reference))
+                    ).mkString(",")
+                }.collect(Collectors.toList[String]())
+
+                val csvFile = new File(outputDir, s"${project.getName}-matrix.csv")
+                val out = new PrintWriter(csvFile, "UTF-8")
+                try {
+                    out.println(
+                        "reference,compared," +
+                            "methodTruePositives,methodPositives,methodTruth,methodPrecision,methodRecall,methodF1," +
+                            "edgeTruePositives,edgePositives,edgeTruth,edgePrecision,edgeRecall,edgeF1"
+                    )
+                    rows.forEach(out.println(_))
+                } finally {
+                    out.close()
+                }
+                println(s"[info] compared ${callGraphs.length} call graphs of ${project.getName}: $csvFile")
+            }
+        }
+    }
+
+    private def readForMatrix(cgFile: File, methods: MethodTable): Option[IdCallGraph] = {
+        try {
+            Some(EvaluationHelper.readIdCG(cgFile, methods))
+        } catch {
+            case e: Exception ⇒
+                println(s"[warn] skipping $cgFile: ${e.getMessage}")
+                None
+        }
+    }
+
+    /**
+     * The counts and the precision, recall and F1-score, in percent, as CSV columns, computed as
+     * for `--showPrecisionRecall`.
+     */
+    private def metrics(truePositive: Int, falsePositive: Int, truth: Int): String = {
+        val positive = truePositive + falsePositive
+        Seq(
+            truePositive.toDouble / positive,
+            truePositive.toDouble / truth,
+            2 * truePositive.toDouble / (truePositive + falsePositive + truth)
+        ).map(ratio ⇒ "%.2f".formatLocal(Locale.ROOT, ratio * 100)).mkString(s"$truePositive,$positive,$truth,", ",", "")
+    }
+
+    /**
+     * Numbers the distinct combinations of name, return type and parameter types of the methods
+     * in the table, so that the signatures of two methods can be compared by their numbers.
+     */
+    private def signatureIds(methods: MethodTable): Array[Int] = {
+        val ids = mutable.HashMap.empty[(String, String, List[String]), Int]
+        Array.tabulate(methods.size) { id ⇒
+            val m = methods(id)
+            ids.getOrElseUpdate((m.name, m.returnType, m.parameterTypes), ids.size)
+        }
+    }
+
+    private def isInPackage(cg: IdCallGraph, node: Int, inPackage: String): Boolean = {
+        cg.methods(cg.method(node)).declaringClass.startsWith(inPackage)
+    }
+
+    private def countMethods(cg: IdCallGraph, inPackage: String): Int = {
+        (0 until cg.nodeCount).count(isInPackage(cg, _, inPackage))
+    }
+
+    private def edgeCount(cg: IdCallGraph, inPackage: String): Int = {
+        (0 until cg.nodeCount).foldLeft(0) { (acc, node) ⇒
+            if(isInPackage(cg, node, inPackage))
+                acc + cg.callSites(node).foldLeft(0)((acc, cs) ⇒ acc + cg.targetCount(cs))
             else acc
         }
     }
 
+    private def countAdditionalMethods(baseCG: IdCallGraph, comparedTo: IdCallGraph, inPackage: String): Int = {
+        (0 until baseCG.nodeCount).count { node ⇒
+            !comparedTo.isReachable(baseCG.method(node)) && isInPackage(baseCG, node, inPackage)
+        }
+    }
+
     private def extractAdditionalMethods(
-        baseCG: Map[Method, Set[CallSite]], comparedTo: Map[Method, Set[CallSite]], inPackage: String
+        baseCG: IdCallGraph, comparedTo: IdCallGraph, inPackage: String
     ): Set[Method] = {
-        baseCG.keySet.filter(m => !comparedTo.contains(m) && m.declaringClass.startsWith(inPackage))
+        (0 until baseCG.nodeCount).iterator.collect {
+            case node if !comparedTo.isReachable(baseCG.method(node)) && isInPackage(baseCG, node, inPackage) ⇒
+                baseCG.methods(baseCG.method(node))
+        }.toSet
     }
 
     private def extractReachableApplicationMethods(
-        appPackages: List[String], cg: Map[Method, Set[CallSite]]
+        appPackages: List[String], cg: IdCallGraph
     ): Set[Method] = {
-        cg.filter(rm ⇒ appPackages.iterator.exists(p ⇒ rm._1.declaringClass.startsWith(s"L$p/"))).keySet
+        (0 until cg.nodeCount).iterator.map(node ⇒ cg.methods(cg.method(node))).filter { m ⇒
+            appPackages.iterator.exists(p ⇒ m.declaringClass.startsWith(s"L$p/"))
+        }.toSet
     }
 
     case class MethodBoundary(m: Method, target: String)
 
     private def extractBoundaries(
-        cg: Map[Method, Set[CallSite]], commonReachableMethods: JHashSet[Method], inPackage: String
+        cg: IdCallGraph, commonReachableMethods: BitSet, inPackage: String
     ): JHashSet[MethodBoundary] = {
         val boundaries = new JHashSet[MethodBoundary]()
 
-        val itr = commonReachableMethods.iterator()
+        val itr = commonReachableMethods.stream().iterator()
         while (itr.hasNext) {
-            val caller = itr.next()
-            if (caller.declaringClass.startsWith(inPackage)) {
-                val callees = cg(caller).flatMap(_.targets)
-                if (callees.iterator.exists(!commonReachableMethods.contains(_))) {
+            val caller = cg.node(itr.next())
+            if (isInPackage(cg, caller, inPackage)) {
+                val callees = cg.callSites(caller).flatMap(cs ⇒ cg.targetRange(cs).map(cg.target)).distinct
+                if (callees.exists(!commonReachableMethods.get(_))) {
                     val differences = new StringBuilder("\n\t\t")
-                    callees.iterator.foreach { callee ⇒
-                        if (!commonReachableMethods.contains(callee)) {
-                            differences.append(s"${transitiveHull(callee, cg, commonReachableMethods)}: $callee\n\t\t")
+                    callees.foreach { callee ⇒
+                        if (!commonReachableMethods.get(callee)) {
+                            differences.append(s"${transitiveHull(callee, cg, commonReachableMethods)}: ${cg.methods(callee)}\n\t\t")
                         }
                     }
-                    boundaries.add(MethodBoundary(caller, differences.result()))
+                    boundaries.add(MethodBoundary(cg.methods(cg.method(caller)), differences.result()))
                 }
             }
         }
@@ -213,98 +354,194 @@ object CompareCGs {
         boundaries
     }
 
+    /**
+     * Whether one of the targets of `callSite` has the same signature as `declared`.
+     */
+    private def hasTargetMatching(cg: IdCallGraph, callSite: Int, declared: Int, signatures: Array[Int]): Boolean = {
+        cg.targetRange(callSite).exists(i ⇒ signatures(cg.target(i)) == signatures(declared))
+    }
+
+    /**
+     * The number of targets of `callSite` in `cg` that are not targets of `otherCallSite` in
+     * `otherCG`.
+     */
+    private def countMissingTargets(cg: IdCallGraph, callSite: Int, otherCG: IdCallGraph, otherCallSite: Int): Int = {
+        cg.targetRange(callSite).count(i ⇒ !otherCG.hasTarget(otherCallSite, cg.target(i)))
+    }
+
+    /**
+     * The call sites of a node of `cg`, grouped by the properties by which the call sites of two
+     * call graphs are matched. A lookup returns a superset of the call sites that have the given
+     * properties, in the order of the node; hence, filtering it with the full condition gives the
+     * same call sites, and the same first one, as filtering all call sites of the node. Nodes
+     * with few call sites are not grouped; their lookups return all call sites.
+     */
+    private class CallSiteIndex(cg: IdCallGraph, node: Int) {
+        private val callSites = cg.callSites(node)
+        private val grouped = callSites.size > CallSiteIndex.MinCallSites
+
+        private lazy val byDeclaredTargetAndLine = group(cs ⇒ cg.declaredTarget(cs) * 31 + cg.line(cs))
+        private lazy val byLine = group(cg.line)
+        private lazy val byPc = group(cg.pcOrElse(_, CallSiteIndex.NoPc))
+
+        def withDeclaredTargetAndLine(declared: Int, line: Int): collection.IndexedSeq[Int] =
+            if (grouped) lookup(byDeclaredTargetAndLine, declared * 31 + line) else callSites
+
+        def withLine(line: Int): collection.IndexedSeq[Int] =
+            if (grouped) lookup(byLine, line) else callSites
+
+        def withPc(pc: Option[Int]): collection.IndexedSeq[Int] =
+            if (grouped) lookup(byPc, pc.getOrElse(CallSiteIndex.NoPc)) else callSites
+
+        /**
+         * Sorts the call sites by their key and then by their position, both packed into a long.
+         */
+        private def group(key: Int ⇒ Int): Array[Long] = {
+            val entries = new Array[Long](callSites.size)
+            var i = 0
+            while (i < entries.length) {
+                entries(i) = (key(callSites.start + i).toLong << 32) | i
+                i += 1
+            }
+            Arrays.sort(entries)
+            entries
+        }
+
+        private def lookup(entries: Array[Long], key: Int): collection.IndexedSeq[Int] = {
+            var i = Arrays.binarySearch(entries, key.toLong << 32)
+            if (i < 0) i = -i - 1
+            val result = ArrayBuffer.empty[Int]
+            while (i < entries.length && (entries(i) >> 32) == key) {
+                result += callSites.start + entries(i).toInt
+                i += 1
+            }
+            result
+        }
+    }
+
+    private object CallSiteIndex {
+        // below, scanning all call sites is cheaper than grouping them
+        val MinCallSites = 8
+
+        val NoPc: Int = Int.MinValue
+    }
+
     private def countAdditionalEdges(
-        cg: Map[Method, Set[CallSite]], otherCG: Map[Method, Set[CallSite]], inPackage: String, strict: Boolean
+        cg: IdCallGraph, otherCG: IdCallGraph, inPackage: String, strict: Boolean, signatures: Array[Int]
     ): Int = {
+        IntStream.range(0, cg.nodeCount).parallel().map { node ⇒
+            if (isInPackage(cg, node, inPackage)) countAdditionalEdges(cg, node, otherCG, strict, signatures)
+            else 0
+        }.sum()
+    }
+
+    private def countAdditionalEdges(
+        cg: IdCallGraph, node: Int, otherCG: IdCallGraph, strict: Boolean, signatures: Array[Int]
+    ): Int = {
+        val otherNode = otherCG.node(cg.method(node))
+        if (otherNode < 0)
+            return cg.callSites(node).foldLeft(0)((acc, cs) ⇒ acc + cg.targetCount(cs))
+
+        val otherCallSites = new CallSiteIndex(otherCG, otherNode)
         var result = 0
-        cg.foreach {
-            case (method, callSites) if method.declaringClass.startsWith(inPackage) ⇒
-                val otherCallSites = otherCG.get(method)
-                callSites.foreach {
-                    case CallSite(declared, line, pc, targets) ⇒
-                        if (otherCallSites.isDefined) {
-                            if(pc.isEmpty){
-                                val possibleCSs = otherCallSites.get.filter{cs ⇒
-                                    (!strict || cs.declaredTarget == declared) && cs.line == line && cs.targets.exists{target ⇒
-                                        target.name == declared.name && target.returnType == declared.returnType && target.parameterTypes == declared.parameterTypes
-                                    }}
-                                val diffs = possibleCSs.foldLeft(targets)((acc, cs) ⇒ acc -- cs.targets)
-                                result += diffs.size
-                            } else {
-                                val differingCSOpt = otherCallSites.get.find(cs ⇒ (!strict || cs.declaredTarget == declared && cs.line == line) && cs.pc == pc && cs.targets.exists { target ⇒
-                                    target.name == declared.name && target.returnType == declared.returnType && target.parameterTypes == declared.parameterTypes
-                                })
-                                if (differingCSOpt.isDefined) {
-                                    val differingCS = differingCSOpt.get
-                                    val diffs = targets -- differingCS.targets
-                                    result += diffs.size
-                                } else {
-                                    result += targets.size
-                                }
-                            }
-                        } else {
-                            result += targets.size
-                        }
+        cg.callSites(node).foreach { cs ⇒
+            val declared = cg.declaredTarget(cs)
+            val line = cg.line(cs)
+            val pc = cg.pc(cs)
+            if(pc.isEmpty){
+                val candidates =
+                    if (strict) otherCallSites.withDeclaredTargetAndLine(declared, line)
+                    else otherCallSites.withLine(line)
+                val possibleCSs = candidates.filter{ocs ⇒
+                    (!strict || otherCG.declaredTarget(ocs) == declared) && otherCG.line(ocs) == line &&
+                        hasTargetMatching(otherCG, ocs, declared, signatures)
+                }
+                result += cg.targetRange(cs).count { i ⇒
+                    !possibleCSs.exists(otherCG.hasTarget(_, cg.target(i)))
                 }
-            case _ ⇒
+            } else {
+                val differingCSOpt = otherCallSites.withPc(pc).find(ocs ⇒ (!strict || otherCG.declaredTarget(ocs) == declared && otherCG.line(ocs) == line) && otherCG.pc(ocs) == pc &&
+                    hasTargetMatching(otherCG, ocs, declared, signatures)
+                )
+                if (differingCSOpt.isDefined) {
+                    result += countMissingTargets(cg, cs, otherCG, differingCSOpt.get)
+                } else {
+                    result += cg.targetCount(cs)
+                }
+            }
         }
 
         result
     }
 
     private def extractAdditionalCalls(
-        cg: Map[Method, Set[CallSite]], otherCG: Map[Method, Set[CallSite]], inPackage: String, strict: Boolean
+        cg: IdCallGraph, otherCG: IdCallGraph, inPackage: String, strict: Boolean
     ): Set[(Method, String)] = {
-        var result = Set.empty[(Method, String)]
-        cg.foreach {
-            case (method, callSites) if method.declaringClass.startsWith(inPackage) ⇒
-                val otherCallSites = otherCG.get(method)
-                if (otherCallSites.isDefined) {
-                    callSites.foreach {
-                        case CallSite(declared, line, pc, targets) ⇒
-                            val differingCSOpt = otherCallSites.get.find(cs ⇒ (!strict || cs.declaredTarget == declared && cs.line == line) && cs.pc == pc)
-                            if (differingCSOpt.isDefined) {
-                                val differingCS = differingCSOpt.get
-                                if (differingCS.targets.size < targets.size) {
-                                    val diffs = targets -- differingCS.targets
-                                    result += ((method, diffs.mkString("\n\t\t", "\n\t\t", "\n")))
-                                }
-                            } else {
-                                result += ((method, targets.mkString("\n\t\t", "\n\t\t", "")))
-                            }
-                    }
+        val perNode = IntStream.range(0, cg.nodeCount).parallel().mapToObj[Seq[(Method, String)]] { node ⇒
+            if (isInPackage(cg, node, inPackage)) extractAdditionalCalls(cg, node, otherCG, strict)
+            else Seq.empty
+        }.collect(Collectors.toList[Seq[(Method, String)]]())
+
+        // in the order of the nodes, as if computed sequentially
+        perNode.asScala.iterator.flatten.toSet
+    }
+
+    private def extractAdditionalCalls(
+        cg: IdCallGraph, node: Int, otherCG: IdCallGraph, strict: Boolean
+    ): Seq[(Method, String)] = {
+        val otherNode = otherCG.node(cg.method(node))
+        if (otherNode < 0)
+            return Seq.empty
+
+        val method = cg.methods(cg.method(node))
+        val otherCallSites = new CallSiteIndex(otherCG, otherNode)
+        cg.callSites(node).flatMap { cs ⇒
+            val declared = cg.declaredTarget(cs)
+            val line = cg.line(cs)
+            val pc = cg.pc(cs)
+            val candidates =
+                if (strict) otherCallSites.withDeclaredTargetAndLine(declared, line)
+                else otherCallSites.withPc(pc)
+            val differingCSOpt = candidates.find(ocs ⇒ (!strict || otherCG.declaredTarget(ocs) == declared && otherCG.line(ocs) == line) && otherCG.pc(ocs) == pc)
+            if (differingCSOpt.isDefined) {
+                val differingCS = differingCSOpt.get
+                if (otherCG.targetCount(differingCS) < cg.targetCount(cs)) {
+                    val diffs = cg.targetRange(cs).map(cg.target).filter(!otherCG.hasTarget(differingCS, _))
+                    Some((method, diffs.map(cg.methods(_)).mkString("\n\t\t", "\n\t\t", "\n")))
+                } else {
+                    None
                 }
-            case _ ⇒
+            } else {
+                Some((method, cg.targetRange(cs).map(i ⇒ cg.methods(cg.target(i))).mkString("\n\t\t", "\n\t\t", "")))
+            }
         }
-
-        result
     }
 
-    private def transitiveHull(method: Method, cg: Map[Method, Set[CallSite]], commonReachableMethods: JHashSet[Method]): (Int, Int) = {
-        val reachableMethods = new java.util.HashSet[Method]()
-        reachableMethods add method
-        val nonCommon = new java.util.HashSet[Method]()
-        nonCommon add method
+    private def transitiveHull(method: Int, cg: IdCallGraph, commonReachableMethods: BitSet): (Int, Int) = {
+        val reachableMethods = new BitSet(cg.methods.size)
+        reachableMethods set method
+        val nonCommon = new BitSet(cg.methods.size)
+        nonCommon set method
 
-        var worklist: mutable.Queue[Method] = mutable.Queue(method)
+        val worklist = mutable.Queue(method)
 
         while (worklist.nonEmpty) {
-            val currentMethod = worklist.head
-            worklist = worklist.tail
-            if (cg.contains(currentMethod)) {
+            val currentNode = cg.node(worklist.dequeue())
+            if (currentNode >= 0) {
                 for {
-                    cs ← cg(currentMethod)
-                    t ← cs.targets
+                    cs ← cg.callSites(currentNode)
+                    i ← cg.targetRange(cs)
                 } {
-                    if (!reachableMethods.contains(t)) {
-                        if (!commonReachableMethods.contains(t))
-                            nonCommon add t
-                        reachableMethods add t
+                    val t = cg.target(i)
+                    if (!reachableMethods.get(t)) {
+                        if (!commonReachableMethods.get(t))
+                            nonCommon set t
+                        reachableMethods set t
                         worklist enqueue t
                     }
                 }
             }
         }
-        (reachableMethods.size, nonCommon.size)
+        (reachableMethods.cardinality(), nonCommon.cardinality())
     }
 }
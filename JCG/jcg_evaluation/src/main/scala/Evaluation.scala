@@ -18,10 +18,17 @@ object Evaluation {
     private var excludeJDK = false
     private var runAnalyses = true
     private var allQueries = false
+    private var resume = false
+    private var fork = false
+    private var workerHeap = WorkerPool.DefaultHeap
+    private var workerRuns = WorkerPool.DefaultMaxRuns
+    private var workerThreshold = WorkerPool.DefaultHeapThreshold
     private var programArgs = Array.empty[String]
 
     private var FINGERPRINT_DIR = ""
 
+    val JOURNAL_FILE_NAME = "evaluation-journal.tsv"
+
     def main(args: Array[String]): Unit = {
 
         // val c = parseConfig(args)
@@ -58,12 +65,17 @@ object Evaluation {
             case Array("--project-specific") => projectSpecificEvaluation = true
             case Array("--exclude-jdk")      => excludeJDK = true
             case Array("--all-queries")      => allQueries = true
+            case Array("--resume")           => resume = true
+            case Array("--fork")             => fork = true
         }
         args.sliding(2, 1).toList.collect {
             case Array("--fingerprint-dir", dir) =>
                 assert(FINGERPRINT_DIR.isEmpty, "multiple fingerprint directories specified")
                 FINGERPRINT_DIR = dir
             case Array("--analyze", value: String) => runAnalyses = value.toBoolean
+            case Array("--worker-heap", heap) => workerHeap = heap
+            case Array("--worker-runs", runs) => workerRuns = runs.toInt
+            case Array("--worker-heap-threshold", threshold) => workerThreshold = threshold.toDouble
         }
         val argsIndex = args.indexOf("--program-args") + 1
         if (argsIndex > 0) {
@@ -125,15 +137,24 @@ object Evaluation {
             name.endsWith(".conf") && name.startsWith(config.PROJECT_PREFIX_FILTER)
         }.sorted
 
+        // with `--resume`, the runs completed by an earlier, interrupted evaluation are skipped
+        val journal = new ResultJournal(new File(resultsDir, JOURNAL_FILE_NAME), resume)
+        // the durations are used to schedule parallel runs, see JavaFingerprintExtractor
+        val history = new TimingHistory(new File(resultsDir, TimingHistory.FileName))
+        // with `--fork`, every analysis runs in a worker JVM with a heap of its own
+        val workerPool = if (fork) Some(new WorkerPool(1, workerHeap, workerRuns, workerThreshold)) else None
+
         for {
-            adapter <- config.EVALUATION_ADAPTERS
+            adapter <- config.EVALUATION_ADAPTERS.map { a =>
+                workerPool.map(new ForkedTestAdapter(a, _)).getOrElse(a)
+            }
             cgAlgo <-
                 adapter.possibleAlgorithms.filter(_.toLowerCase().startsWith(config.ALGORITHM_PREFIX_FILTER.toLowerCase()))
             psf <- projectSpecFiles
+            projectSpec = Json.parse(new FileInputStream(psf)).validate[ProjectSpecification].get
+            if !isCompleted(journal, adapter, cgAlgo, projectSpec)
         } {
 
-            val projectSpec = Json.parse(new FileInputStream(psf)).validate[ProjectSpecification].get
-
             println(s"running ${adapter.frameworkName} $cgAlgo against ${projectSpec.name}")
 
             val outDir = EvaluationHelper.getOutputDirectory(adapter, cgAlgo, projectSpec, resultsDir)
@@ -143,43 +164,71 @@ object Evaluation {
             if (cgFile.exists())
                 cgFile.delete()
 
-            val output =
-                if (cgFile.getName.endsWith(".zip") || cgFile.getName.endsWith(".gz"))
-                    new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(cgFile)))
-                else
-                    new BufferedWriter(new FileWriter(cgFile))
-
-            val elapsed =
-                try {
-                    adapter.serializeCG(
-                        cgAlgo,
-                        projectSpec.target(projectsDir).getCanonicalPath,
-                        new FileWriter(cgFile.getPath),
-                        AdapterOptions.makeJavaOptions(
-                            projectSpec.main.orNull,
-                            projectSpec.allClassPathEntryPaths(projectsDir),
-                            jreLocations(projectSpec.java),
-                            !excludeJDK,
-                            programArgs = programArgs
-                        )
-                    )
-
-                } catch {
-                    case e: Throwable =>
-                        println(s"Exception in project ${projectSpec.name}:")
-                        println(s"Exception type: ${e.getClass.getName}")
-                        println(s"Exception message: ${e.getMessage}")
-                        println("Stack trace:")
-                        e.printStackTrace()
-                        if (config.DEBUG) {
-                            e.printStackTrace()
+            val options = AdapterOptions.makeJavaOptions(
+                projectSpec.main.orNull,
+                projectSpec.allClassPathEntryPaths(projectsDir),
+                jreLocations(projectSpec.java),
+                !excludeJDK,
+                programArgs = programArgs,
+                outputDir = outDir.getAbsolutePath
+            )
+
+            val cacheKey =
+                if (ResultCache.enabled)
+                    Some(ResultCache.key(adapter, cgAlgo, ResultCache.inputsOf(projectSpec, projectsDir), options))
+                else None
+
+            val startMillis = System.currentTimeMillis()
+            val cached = cacheKey.flatMap(ResultCache.restore(_, cgFile))
+            val elapsed = cached match {
+                case Some(entry) =>
+                    println(s"reusing cached call graph of ${adapter.frameworkName} $cgAlgo for ${projectSpec.name}")
+                    entry.elapsedNanos
+                case None =>
+                    val output =
+                        if (cgFile.getName.endsWith(".zip") || cgFile.getName.endsWith(".gz"))
+                            new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(cgFile)))
+                        else
+                            new BufferedWriter(new FileWriter(cgFile))
+                    val elapsed =
+                        try {
+                            adapter.serializeCG(
+                                cgAlgo,
+                                projectSpec.target(projectsDir).getCanonicalPath,
+                                output,
+                                options
+                            )
+
+                        } catch {
+                            case e: Throwable =>
+                                println(s"Exception in project ${projectSpec.name}:")
+                                println(s"Exception type: ${e.getClass.getName}")
+                                println(s"Exception message: ${e.getMessage}")
+                                println("Stack trace:")
+                                e.printStackTrace()
+                                if (config.DEBUG) {
+                                    e.printStackTrace()
+                                }
+                                -1
+                        } finally {
+                            output.close()
                         }
-                        -1
-                }
 
-            System.gc()
+                    // there is no assessment, the call graphs are only compared afterwards; only
+                    // complete call graphs of successful runs are cached
+                    if (elapsed >= 0 && cgFile.length() > 0) {
+                        val reports = ResultCache.reportsWrittenSince(outDir, cgFile, startMillis)
+                        cacheKey.foreach(ResultCache.store(_, cgFile, reports, ResultCache.Entry("-", elapsed)))
+                    }
+                    elapsed
+            }
+
+            if (workerPool.isEmpty) System.gc()
 
-            reportTiming(outDir, elapsed)
+            reportTiming(outDir, elapsed, cached.isDefined)
+            // the history only holds measured runs
+            if (cached.isEmpty)
+                history.record(adapter, cgAlgo, projectSpec.name, elapsed, TimingHistory.peakMemory(outDir, startMillis))
 
             if (projectSpecificEvaluation) {
                 assert(cgFile.exists(), "the adapter failed to write the call graph")
@@ -192,15 +241,38 @@ object Evaluation {
                     cgFile
                 )
             }
+
+            // a failed run, e.g., of a killed worker, is run again with `--resume`
+            if (elapsed >= 0)
+                journal.record(adapter, cgAlgo, projectSpec.name, "-", elapsed)
         }
+        journal.close()
+        workerPool.foreach(_.close())
+    }
+
+    private def isCompleted(
+        journal:     ResultJournal,
+        adapter:     TestAdapter,
+        algorithm:   String,
+        projectSpec: ProjectSpecification
+    ): Boolean = {
+        // failed runs in journals of older versions are run again
+        val entry = journal.get(adapter, algorithm, projectSpec.name).filter(_.elapsedNanos >= 0)
+        entry.foreach(_ => println(s"skipping ${adapter.frameworkName} $algorithm against ${projectSpec.name}, already done"))
+        entry.isDefined
     }
 
-    private def reportTiming(outDir: File, elapsed: Long): Unit = {
+    /**
+     * Writes the duration of the analysis to `timings.txt`; the duration of a result restored from
+     * the [[ResultCache]] is that of the run it was cached from, which is noted on a second line.
+     */
+    private def reportTiming(outDir: File, elapsed: Long, cached: Boolean): Unit = {
         val seconds = elapsed / 1000000000d
         val pw = new PrintWriter(new File(outDir, "timings.txt"))
         pw.write(s"$seconds sec.")
+        if (cached) pw.write("\ncached: measured by an earlier run with the same inputs")
         pw.close()
-        println(s"analysis took $seconds sec.")
+        println(s"analysis took $seconds sec.${if (cached) " (cached)" else ""}")
     }
 
     private def performProjectSpecificEvaluation(
@@ -213,10 +285,10 @@ object Evaluation {
     ): Unit = {
         val fingerprint = FingerprintExtractor.parseFingerprints(adapter, algorithm, new File(FINGERPRINT_DIR))
         val locations = locationsMap(projectSpec.name)
-        val reachableMethods = Json.parse(new FileInputStream(jsFile)).validate[ReachableMethods].get.toMap
+        val callGraph = EvaluationHelper.readIdCG(jsFile)
 
         val projectSpecificLocations = ProjectSpecificEvaluator.projectSpecificEvaluation(
-            reachableMethods.keySet,
+            callGraph,
             locations,
             fingerprint
         )
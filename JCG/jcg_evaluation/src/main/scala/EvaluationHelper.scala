@@ -1,9 +1,8 @@
+import java.io.BufferedInputStream
 import java.io.File
 import java.io.FileInputStream
 import java.util.zip.GZIPInputStream
 
-import play.api.libs.json.Json
-
 // todo make a factory
 class CommonEvaluationConfig(
     val DEBUG:                   Boolean,
@@ -33,10 +32,39 @@ case class JCGConfig(
     fingerprintDir:  File              = new File(""),
     debug:           Boolean           = false,
     parallel:        Boolean           = false,
+    pipeline:        Boolean           = false,
+    pipelineDepth:   Int               = -1,
+    matcherThreads:  Int               = 1,
+    workers:         Int               = -1,
+    memoryBudget:    Option[Long]      = None,
+    resume:          Boolean           = false,
+    fork:            Boolean           = false,
+    workerHeap:      String            = WorkerPool.DefaultHeap,
+    workerRuns:      Int               = WorkerPool.DefaultMaxRuns,
+    workerThreshold: Double            = WorkerPool.DefaultHeapThreshold,
     language:        String            = ""
 ) {
     val JRE_LOCATIONS_FILE = "jre.conf"
     val SERIALIZATION_FILE_NAME = "cg.json"
+
+    /**
+     * The number of test cases run at the same time: `workers` if given, otherwise the number of
+     * cores with `parallel` and 1 without.
+     */
+    def effectiveWorkers: Int = {
+        if (workers > 0) workers
+        else if (parallel) Runtime.getRuntime.availableProcessors()
+        else 1
+    }
+
+    /**
+     * The pool of worker JVMs the adapters are run in with `fork`, one worker per test case run
+     * at the same time.
+     */
+    def newWorkerPool(): Option[WorkerPool] = {
+        if (fork) Some(new WorkerPool(effectiveWorkers, workerHeap, workerRuns, workerThreshold))
+        else None
+    }
 }
 
 object ConfigParser {
@@ -107,6 +135,59 @@ object ConfigParser {
                     .action((_, c) => c.copy(parallel = true))
                     .hidden()
                     .optional(),
+                opt[Int]("workers")
+                    .action((workers, c) => c.copy(workers = workers))
+                    .text("Number of test cases run at the same time (default: 1, number of cores with --parallel).")
+                    .valueName("workers")
+                    .validate(workers => if (workers > 0) success else failure("<workers> must be positive"))
+                    .maxOccurs(1).optional(),
+                opt[String]("memory-budget")
+                    .action((size, c) => c.copy(memoryBudget = TaskScheduler.parseMemorySize(size)))
+                    .text("Memory all test cases running at the same time may use together, e.g. 48g; the memory of a test case is estimated from earlier runs with --fork.")
+                    .valueName("size")
+                    .validate(size => if (TaskScheduler.parseMemorySize(size).isDefined) success else failure("<size> must be a memory size such as 48g"))
+                    .maxOccurs(1).optional(),
+                opt[Unit]("resume")
+                    .action((_, c) => c.copy(resume = true))
+                    .text("Skips the test cases recorded in the journal of a previous, interrupted run.")
+                    .optional(),
+                opt[Unit]("fork")
+                    .action((_, c) => c.copy(fork = true))
+                    .text("Runs the adapters in worker JVMs instead of the evaluation's JVM.")
+                    .optional(),
+                opt[String]("worker-heap")
+                    .action((heap, c) => c.copy(workerHeap = heap))
+                    .text(s"Maximal heap size of a worker JVM, e.g. 8g (default: ${WorkerPool.DefaultHeap}).")
+                    .valueName("size")
+                    .maxOccurs(1).optional(),
+                opt[Int]("worker-runs")
+                    .action((runs, c) => c.copy(workerRuns = runs))
+                    .text(s"Number of runs after which a worker JVM is replaced (default: ${WorkerPool.DefaultMaxRuns}).")
+                    .valueName("runs")
+                    .validate(runs => if (runs > 0) success else failure("<runs> must be positive"))
+                    .maxOccurs(1).optional(),
+                opt[Double]("worker-heap-threshold")
+                    .action((threshold, c) => c.copy(workerThreshold = threshold))
+                    .text(s"Fraction of its heap still in use after a run above which a worker JVM is replaced (default: ${WorkerPool.DefaultHeapThreshold}).")
+                    .valueName("fraction")
+                    .validate(t => if (t > 0 && t <= 1) success else failure("<fraction> must be in (0, 1]"))
+                    .maxOccurs(1).optional(),
+                opt[Unit]("pipeline")
+                    .action((_, c) => c.copy(pipeline = true))
+                    .text("Overlaps the stages of consecutive test cases for adapters that support it (e.g. NativeImage).")
+                    .optional(),
+                opt[Int]("pipeline-depth")
+                    .action((depth, c) => c.copy(pipelineDepth = depth))
+                    .text("Maximum number of test cases in the pipeline at the same time (default: number of stages + 1).")
+                    .valueName("depth")
+                    .validate(depth => if (depth > 0) success else failure("<depth> must be positive"))
+                    .maxOccurs(1).optional(),
+                opt[Int]("matcher-threads")
+                    .action((threads, c) => c.copy(matcherThreads = threads))
+                    .text("Number of threads matching call graphs, shared by all test cases (default: 1).")
+                    .valueName("threads")
+                    .validate(threads => if (threads > 0) success else failure("<threads> must be positive"))
+                    .maxOccurs(1).optional(),
                 opt[File]('f', "fingerprintDir")
                     .action((dir, c) => c.copy(fingerprintDir = dir))
                     .text("provide a fingerprint for a project-specific evaluation")
@@ -232,13 +313,48 @@ object EvaluationHelper {
         new File(resultsDir, dirName)
     }
 
+    /**
+     * Reads a call graph in the JSON format or in the binary format of [[ReachableMethodsBinary]],
+     * either of which may be gzipped if the file ends with `.zip` or `.gz`. The format is
+     * detected from the content, not from the file name.
+     */
     def readCG(cgFile: File): ReachableMethods = {
-        val input =
+        val builder = new ReachableMethodsBuilder
+        visitCG(cgFile, builder)
+        builder.result()
+    }
+
+    /**
+     * Reads the call graph in `cgFile` as [[IdCallGraph]] whose methods are added to `methods`,
+     * without materializing its [[ReachableMethods]].
+     */
+    def readIdCG(cgFile: File, methods: MethodTable = new MethodTable): IdCallGraph = {
+        val builder = new IdCallGraph.Builder(methods)
+        visitCG(cgFile, builder)
+        builder.result()
+    }
+
+    /**
+     * Reports the call graph in `cgFile`, in any of the formats accepted by [[readCG]], to
+     * `visitor` without keeping it in memory.
+     */
+    def visitCG(cgFile: File, visitor: ReachableMethodsVisitor): Unit = {
+        val file = new FileInputStream(cgFile)
+        val input = new BufferedInputStream(
             if (cgFile.getName.endsWith(".zip") || cgFile.getName.endsWith(".gz"))
-                new GZIPInputStream(new FileInputStream(cgFile))
+                new GZIPInputStream(file)
             else
-                new FileInputStream(cgFile)
+                file,
+            1 << 16
+        )
 
-        Json.parse(input).validate[ReachableMethods].get
+        try {
+            if (ReachableMethodsBinary.isBinary(input))
+                ReachableMethodsBinary.visit(input, visitor)
+            else
+                ReachableMethodsReader.visit(input, visitor)
+        } finally {
+            input.close()
+        }
     }
 }
@@ -9,6 +9,7 @@ import scala.io.Source
 
 trait FingerprintExtractor {
     val EVALUATION_RESULT_FILE_NAME = "evaluation-result.tsv"
+    val JOURNAL_FILE_NAME = "fingerprint-journal.tsv"
     val language: String
 
     def generateFingerprints(config: JCGConfig): Unit = {
@@ -23,9 +24,11 @@ trait FingerprintExtractor {
 
         val ow = new BufferedWriter(getOutputTarget(outputDir))
         printHeader(ow, testDirs.map(new File(_)))
+        val journal = new ResultJournal(new File(outputDir, JOURNAL_FILE_NAME), config.resume)
+        val workerPool = config.newWorkerPool()
 
         for {
-            adapter <- config.adapters
+            adapter <- config.adapters.map(forked(_, workerPool))
             cgAlgorithm <- adapter.possibleAlgorithms.filter(_.startsWith(config.algorithmFilter))
         } {
             ow.write(s"${adapter.frameworkName}-$cgAlgorithm")
@@ -37,43 +40,159 @@ trait FingerprintExtractor {
             val adapterDir = new File(s"$outputDir/${adapter.frameworkName}/$cgAlgorithm")
             adapterDir.mkdirs()
             for (testDir <- testDirs.filter(_.startsWith(config.projectFilter))) {
-                val output = new BufferedWriter(new FileWriter(adapterDir.getAbsolutePath + "/" + testDir + ".json"))
-
-                val future = Future {
-                    // execute adapter
-                    try {
-                        adapter.serializeCG(
-                            cgAlgorithm,
-                            s"${inputDir.getAbsolutePath}/$testDir",
-                            output
-                        )
-                    } catch {
-                        case e: Throwable =>
-                            if (config.debug) {
-                                println(e.getMessage)
-                            }
-                    } finally {
-                        output.close()
-                    }
+                val journaled = journaledAssessment(journal, adapter, cgAlgorithm, testDir)
+                if (journaled.isDefined) {
+                    ow.write(s"\t${journaled.get.shortNotation}")
+                    fingerprintWriter.write(s"$testDir -> ${journaled.get}\n")
+                } else {
+                    val cgFile = new File(adapterDir, s"$testDir.json")
+                    val cacheKey = resultCacheKey(
+                        adapter,
+                        cgAlgorithm,
+                        Seq(new File(inputDir, testDir)),
+                        AdapterOptions.makeEmptyOptions()
+                    )
 
-                    // try reading and matching resulting call graph
-                    ow.synchronized {
-                        System.gc()
+                    val future = Future {
+                        val cached = cachedAssessment(cacheKey, cgFile, testDir)
+                        var elapsed = cached.map(_._2).getOrElse(-1L)
+                        var completed = false
+                        if (cached.isEmpty) {
+                            // execute adapter
+                            val output = new BufferedWriter(new FileWriter(cgFile))
+                            try {
+                                elapsed = adapter.serializeCG(
+                                    cgAlgorithm,
+                                    s"${inputDir.getAbsolutePath}/$testDir",
+                                    output
+                                )
+                                completed = true
+                            } catch {
+                                case e: Throwable =>
+                                    if (config.debug) {
+                                        println(e.getMessage)
+                                    }
+                            } finally {
+                                output.close()
+                            }
+                        }
 
-                        val result: Assessment = assessCG(inputDir, adapterDir, testDir)
+                        // try reading and matching resulting call graph
+                        ow.synchronized {
+                            val result: Assessment = cached.map(_._1).getOrElse {
+                                if (workerPool.isEmpty) System.gc()
+                                assessCG(inputDir, adapterDir, testDir)
+                            }
+                            if (completed)
+                                cacheAssessment(cacheKey, cgFile, Seq.empty, result, elapsed)
 
-                        ow.write(s"\t${result.shortNotation}")
-                        fingerprintWriter.write(s"$testDir -> $result\n")
-                        fingerprintWriter.flush()
+                            ow.write(s"\t${result.shortNotation}")
+                            fingerprintWriter.write(s"$testDir -> $result\n")
+                            fingerprintWriter.flush()
+                            journalAssessment(journal, adapter, cgAlgorithm, testDir, result, elapsed)
+                        }
                     }
+                    tryAwaitGenerateCG(config.timeout, ow, fingerprintWriter, testDir, future)
                 }
-                tryAwaitGenerateCG(config.timeout, ow, fingerprintWriter, testDir, future)
-
             }
             ow.newLine()
             fingerprintWriter.close()
         }
         ow.close()
+        journal.close()
+        workerPool.foreach(_.close())
+    }
+
+    /**
+     * Runs the `adapter` in the worker JVMs of the `workerPool`, if any.
+     */
+    protected def forked(adapter: TestAdapter, workerPool: Option[WorkerPool]): TestAdapter =
+        workerPool.map(new ForkedTestAdapter(adapter, _)).getOrElse(adapter)
+
+    /**
+     * Returns the assessment of a test case recorded in the `journal` by an earlier run, if any.
+     * Errors and timeouts found in journals of older versions are ignored, see [[journalAssessment]].
+     */
+    protected def journaledAssessment(
+        journal:   ResultJournal,
+        adapter:   TestAdapter,
+        algorithm: String,
+        testName:  String
+    ): Option[Assessment] = {
+        val assessment = journal.get(adapter, algorithm, testName)
+            .flatMap(e => Assessment.fromShortNotation(e.assessment))
+            .filter(isFinal)
+        assessment.foreach(a => println(s"skipping test case $testName, already assessed as ${a.shortNotation}"))
+        assessment
+    }
+
+    /**
+     * Records the assessment of a test case in the `journal`, unless the test case failed or timed
+     * out: these are the runs a crash, e.g., of a killed worker or of an exhausted heap, most
+     * likely broke, hence, `--resume` runs them again.
+     */
+    protected def journalAssessment(
+        journal:    ResultJournal,
+        adapter:    TestAdapter,
+        algorithm:  String,
+        testName:   String,
+        assessment: Assessment,
+        elapsed:    Long
+    ): Unit = {
+        if (isFinal(assessment))
+            journal.record(adapter, algorithm, testName, assessment.shortNotation, elapsed)
+    }
+
+    private def isFinal(assessment: Assessment): Boolean = assessment != Error && assessment != Timeout
+
+    /**
+     * The version of the code that assesses the call graphs, part of the [[ResultCache]] keys, so
+     * that a changed matcher does not serve stale assessments. By default, the extractor's own code.
+     */
+    protected lazy val matcherVersion: String = TestAdapter.codeVersion(getClass)
+
+    /**
+     * Computes the key of a test case in the [[ResultCache]], if the cache is enabled.
+     */
+    protected def resultCacheKey(
+        adapter:   TestAdapter,
+        algorithm: String,
+        inputs:    Seq[File],
+        options:   AdapterOptions
+    ): Option[String] = {
+        if (ResultCache.enabled) Some(ResultCache.key(adapter, algorithm, inputs, options, matcherVersion))
+        else None
+    }
+
+    /**
+     * Restores the call graph of a test case from the [[ResultCache]] to `cgFile`.
+     *
+     * @return The cached assessment and the duration of the cached run in nanoseconds, if any.
+     */
+    protected def cachedAssessment(cacheKey: Option[String], cgFile: File, testName: String): Option[(Assessment, Long)] = {
+        val cached = for {
+            key <- cacheKey
+            entry <- ResultCache.restore(key, cgFile)
+            assessment <- Assessment.fromShortNotation(entry.assessment)
+        } yield (assessment, entry.elapsedNanos)
+        cached.foreach(c => println(s"reusing cached call graph of test case $testName, assessed as ${c._1.shortNotation}"))
+        cached
+    }
+
+    /**
+     * Stores the call graph of a test case, the `reports` written by the adapter and the
+     * `assessment` in the [[ResultCache]]. Errors and timeouts are not cached, as they may be
+     * caused by the environment rather than by the analysis.
+     */
+    protected def cacheAssessment(
+        cacheKey:     Option[String],
+        cgFile:       File,
+        reports:      Seq[File],
+        assessment:   Assessment,
+        elapsedNanos: Long
+    ): Unit = {
+        if (assessment != Error && assessment != Timeout && cgFile.length() > 0)
+            cacheKey.foreach(ResultCache.store(_, cgFile, reports, ResultCache.Entry(assessment.shortNotation, elapsedNanos)))
     }
 
     /**
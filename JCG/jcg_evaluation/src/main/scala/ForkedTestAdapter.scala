@@ -0,0 +1,66 @@
+import java.io.Writer
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.concurrent.TimeoutException
+import play.api.libs.json.Json
+
+/**
+ * Runs the adapter object `delegate` in a worker JVM of the `pool` instead of in the JVM of the
+ * evaluation. The worker writes the call graph to a temporary file, which is copied to the
+ * `output` afterwards. If the options contain an `outputDir`, the peak heap of the worker during
+ * the run is reported in [[ForkedTestAdapter.ReportFileName]] there.
+ */
+class ForkedTestAdapter(val delegate: TestAdapter, pool: WorkerPool) extends TestAdapter {
+    val frameworkName: String = delegate.frameworkName
+    val language: String = delegate.language
+    val possibleAlgorithms: Array[String] = delegate.possibleAlgorithms
+
+    override def frameworkVersion: String = delegate.frameworkVersion
+
+    def serializeCG(
+        algorithm:      String,
+        inputDirPath:   String,
+        output:         Writer,
+        adapterOptions: AdapterOptions
+    ): Long = {
+        val cgFile: Path = Files.createTempFile("jcg-worker-cg", ".json")
+        try {
+            val response = pool.run(AdapterWorker.Request(
+                delegate.getClass.getName,
+                algorithm,
+                inputDirPath,
+                cgFile.toString,
+                adapterOptions.options
+            ))
+            Option(adapterOptions.getString("outputDir")).foreach { outputDir =>
+                Files.writeString(
+                    Paths.get(outputDir, ForkedTestAdapter.ReportFileName),
+                    Json.prettyPrint(Json.obj("peakHeapBytes" -> response.peakHeap))
+                )
+            }
+            response.error.foreach { trace =>
+                // a timeout enforced by the adapter itself is still reported as a timeout
+                if (trace.startsWith(classOf[TimeoutException].getName))
+                    throw new TimeoutException(s"$frameworkName timed out in a worker JVM:\n$trace")
+                throw new RuntimeException(s"$frameworkName failed in a worker JVM:\n$trace")
+            }
+
+            val input = Files.newBufferedReader(cgFile)
+            try {
+                input.transferTo(output)
+            } finally {
+                input.close()
+            }
+            output.flush()
+            response.elapsed
+        } finally {
+            Files.deleteIfExists(cgFile)
+        }
+    }
+}
+
+object ForkedTestAdapter {
+
+    val ReportFileName = "worker.json"
+}
@@ -1,7 +1,15 @@
 import java.io._
 import play.api.libs.json.Json
-import scala.concurrent.ExecutionContext.Implicits.global
-import scala.concurrent.Future
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeoutException
+import org.apache.commons.io.FileUtils
+import scala.concurrent.duration.DurationInt
 import scala.util.Failure
 import scala.util.Success
 
@@ -11,6 +19,10 @@ import org.opalj.log.OPALLogger
 object JavaFingerprintExtractor extends FingerprintExtractor {
     val language = "java"
 
+    // the matcher, its reachability index and the reader of the expectations and call graphs
+    override protected lazy val matcherVersion: String =
+        TestAdapter.codeVersion(CGMatcher.getClass, Expectations.getClass)
+
     override def generateFingerprints(config: JCGConfig): Unit = {
         if (!config.debug)
             OPALLogger.updateLogger(GlobalLogContext, new DevNullLogger())
@@ -29,6 +41,18 @@ object JavaFingerprintExtractor extends FingerprintExtractor {
         val ow = new BufferedWriter(getOutputTarget(resultsDir))
         printHeader(ow, projectSpecFiles)
 
+        // matches the call graphs of several test cases and the annotations of a test case in parallel
+        val matcherPool = if (config.matcherThreads > 1) Some(new ForkJoinPool(config.matcherThreads)) else None
+        val journal = new ResultJournal(new File(resultsDir, JOURNAL_FILE_NAME), config.resume)
+        val history = new TimingHistory(new File(resultsDir, TimingHistory.FileName))
+        if (config.memoryBudget.isDefined && !config.fork)
+            println(
+                "[warn] --memory-budget without --fork: only Native Image reports the memory of a run, " +
+                    "the test cases of the other adapters are estimated at the budget divided by the workers"
+            )
+        // the pipeline runs in the evaluation's JVM, its stages start processes of their own
+        val workerPool = config.newWorkerPool()
+
         for {
             adapter <- config.adapters
             cgAlgorithm <- adapter.possibleAlgorithms.filter(_.startsWith(config.algorithmFilter))
@@ -38,71 +62,447 @@ object JavaFingerprintExtractor extends FingerprintExtractor {
             println(s"creating fingerprint for ${adapter.frameworkName} $cgAlgorithm")
             val fingerprintWriter: PrintWriter = makeFingerprintWriter(resultsDir, adapter, cgAlgorithm)
 
-            for (psf <- projectSpecFiles) {
-                val projectSpec = Json.parse(new FileInputStream(psf)).validate[ProjectSpecification].get
+            if (config.pipeline && adapter.isInstanceOf[PipelinedTestAdapter]) {
+                runPipeline(
+                    adapter.asInstanceOf[PipelinedTestAdapter],
+                    cgAlgorithm,
+                    projectSpecFiles,
+                    projectsDir,
+                    jreLocations,
+                    config,
+                    matcherPool,
+                    journal,
+                    history,
+                    ow,
+                    fingerprintWriter
+                )
+            } else {
+                runTests(
+                    forked(adapter, workerPool),
+                    cgAlgorithm,
+                    projectSpecFiles,
+                    projectsDir,
+                    jreLocations,
+                    config,
+                    matcherPool,
+                    journal,
+                    history,
+                    ow,
+                    fingerprintWriter
+                )
+            }
+            ow.newLine()
+            fingerprintWriter.close()
+        }
+        ow.close()
+        journal.close()
+        workerPool.foreach(_.close())
+        matcherPool.foreach(_.shutdown())
+    }
 
-                val outDir = EvaluationHelper.getOutputDirectory(adapter, cgAlgorithm, projectSpec, resultsDir)
-                outDir.mkdirs()
+    /**
+     * Writes the assessments of the test cases of one algorithm in the order of the test cases:
+     * an assessment is written as soon as all assessments of the preceding test cases have been
+     * written. Only the first assessment of each test case is used.
+     */
+    private class OrderedResults(size: Int, ow: BufferedWriter, fingerprintWriter: PrintWriter) {
+        private val names = new Array[String](size)
+        private val results = new Array[Assessment](size)
+        private var next = 0
 
-                val cgFile = new File(outDir, config.SERIALIZATION_FILE_NAME)
-                if (cgFile.exists()) {
-                    cgFile.delete()
+        def complete(index: Int, name: String, result: Assessment): Unit = ow.synchronized {
+            if (results(index) == null) {
+                names(index) = name
+                results(index) = result
+            }
+            while (next < size && results(next) != null) {
+                ow.write(s"\t${results(next).shortNotation}")
+                fingerprintWriter.println(s"${names(next)}\t${results(next).shortNotation}")
+                fingerprintWriter.flush()
+                println(s"${names(next)}\t${results(next).shortNotation}")
+                next += 1
+            }
+        }
+    }
+
+    /**
+     * Runs the test cases on `config.effectiveWorkers` workers, each test case with the configured
+     * timeout. The results are written in the order of `projectSpecFiles` and the wall-clock time
+     * of the whole run is appended to [[WallClockFileName]]. Test cases found in the `journal`
+     * are not run again, test cases found in the [[ResultCache]] are not analysed again.
+     *
+     * With more than one worker, the test cases are started longest first according to the
+     * `history`, which keeps a long test case from being started last and stretching the whole
+     * run. The achieved makespan is reported together with its lower bound, the larger of the
+     * longest test case and the total running time divided by the number of workers.
+     */
+    private def runTests(
+        adapter:           TestAdapter,
+        cgAlgorithm:       String,
+        projectSpecFiles:  Array[File],
+        projectsDir:       File,
+        jreLocations:      Map[Int, String],
+        config:            JCGConfig,
+        matcherPool:       Option[ForkJoinPool],
+        journal:           ResultJournal,
+        history:           TimingHistory,
+        ow:                BufferedWriter,
+        fingerprintWriter: PrintWriter
+    ): Unit = {
+        val results = new OrderedResults(projectSpecFiles.length, ow, fingerprintWriter)
+        val timeout = if (config.timeout >= 0) Some(config.timeout.seconds) else None
+        val scheduler = new TaskScheduler(config.effectiveWorkers, timeout, config.memoryBudget)
+        var tasks = Map.empty[Int, scheduler.Task[(Assessment, Long)]]
+        val start = System.nanoTime()
+
+        try {
+            val projectSpecs = projectSpecFiles.map { psf =>
+                Json.parse(new FileInputStream(psf)).validate[ProjectSpecification].get
+            }
+            val journaled = projectSpecs.map(spec => journaledAssessment(journal, adapter, cgAlgorithm, spec.name))
+
+            val toRun = projectSpecs.indices.filter(journaled(_).isEmpty)
+            val memory = toRun.map { i =>
+                i -> config.memoryBudget.fold(0L) { budget =>
+                    history.estimatedMemory(adapter, cgAlgorithm, projectSpecs(i).name).getOrElse(budget / scheduler.workers)
+                }
+            }.toMap
+            // longest first; with a memory budget, the largest test cases are started first and the
+            // smaller ones fill the gaps
+            val order =
+                if (scheduler.workers == 1) toRun
+                else {
+                    val duration = toRun.zip(history.estimatedDurations(
+                        adapter,
+                        cgAlgorithm,
+                        toRun.map(i => projectSpecs(i).name -> inputSize(projectSpecs(i), projectsDir))
+                    )).toMap
+                    toRun.sortBy(i => (-memory(i), -duration(i)))
                 }
 
-                val output = new BufferedWriter(new FileWriter(cgFile))
+            tasks = order.map { i =>
+                i -> submitTest(
+                    scheduler,
+                    adapter,
+                    cgAlgorithm,
+                    projectSpecs(i),
+                    projectsDir,
+                    jreLocations,
+                    config,
+                    matcherPool,
+                    history,
+                    memory(i)
+                )
+            }.toMap
 
+            for ((projectSpec, index) <- projectSpecs.zipWithIndex) {
+                val name = projectSpec.name
+                val result = journaled(index) match {
+                    case Some(assessment) =>
+                        assessment
+                    case None =>
+                        val (assessment, elapsed) = tasks(index).await() match {
+                            case Success(assessmentAndTime) =>
+                                assessmentAndTime
+                            case Failure(_: TimeoutException) =>
+                                println(s"Test case $name was interrupted after ${config.timeout} seconds")
+                                (Timeout, -1L)
+                            case Failure(e) =>
+                                println(s"[error] $name: ${e.getClass.getName} - ${e.getMessage}")
+                                if (config.debug) e.printStackTrace()
+                                (Error, -1L)
+                        }
+                        journalAssessment(journal, adapter, cgAlgorithm, name, assessment, elapsed)
+                        assessment
+                }
+                results.complete(index, name, result)
+            }
+        } finally {
+            scheduler.close()
+        }
+
+        val seconds = (System.nanoTime() - start) / 1e9
+        val runningTimes = tasks.values.flatMap(_.runningTime).map(_ / 1e9)
+        val lowerBound = math.max(runningTimes.maxOption.getOrElse(0d), runningTimes.sum / scheduler.workers)
+        println(
+            f"${adapter.frameworkName}-$cgAlgorithm: ${projectSpecFiles.length} test case(s) on ${scheduler.workers} worker(s) " +
+                f"in $seconds%.1f s, lower bound $lowerBound%.1f s"
+        )
+        appendWallClock(
+            config.outputDir,
+            s"${adapter.frameworkName}-$cgAlgorithm",
+            scheduler.workers,
+            projectSpecFiles.length,
+            seconds,
+            lowerBound
+        )
+    }
+
+    /**
+     * The size of the analysed files of a project in bytes.
+     */
+    private def inputSize(projectSpec: ProjectSpecification, projectsDir: File): Long = {
+        ResultCache.inputsOf(projectSpec, projectsDir).map { file =>
+            if (file.isDirectory) FileUtils.sizeOfDirectory(file) else file.length()
+        }.sum
+    }
+
+    /**
+     * Schedules the adapter run and the matching of a single test case, unless its result is
+     * found in the [[ResultCache]]. The duration and peak memory of the run are added to the
+     * `history`.
+     *
+     * @param memory The estimated memory of the test case, see [[TaskScheduler.submitRequiring]].
+     * @return The task computing the assessment and the duration of the test case in nanoseconds.
+     */
+    private def submitTest(
+        scheduler:    TaskScheduler,
+        adapter:      TestAdapter,
+        cgAlgorithm:  String,
+        projectSpec:  ProjectSpecification,
+        projectsDir:  File,
+        jreLocations: Map[Int, String],
+        config:       JCGConfig,
+        matcherPool:  Option[ForkJoinPool],
+        history:      TimingHistory,
+        memory:       Long
+    ): scheduler.Task[(Assessment, Long)] = {
+        val outDir = EvaluationHelper.getOutputDirectory(adapter, cgAlgorithm, projectSpec, config.outputDir)
+        outDir.mkdirs()
+
+        val cgFile = new File(outDir, config.SERIALIZATION_FILE_NAME)
+        if (cgFile.exists()) {
+            cgFile.delete()
+        }
+
+        scheduler.submitRequiring(memory) {
+            val options = javaOptions(projectSpec, projectsDir, jreLocations, outDir, config)
+            val cacheKey = resultCacheKey(adapter, cgAlgorithm, ResultCache.inputsOf(projectSpec, projectsDir), options)
+
+            cachedAssessment(cacheKey, cgFile, projectSpec.name).getOrElse {
                 println(s"performing test case: ${projectSpec.name}")
+                val startMillis = System.currentTimeMillis()
+                val start = System.nanoTime()
 
-                val future = Future {
-                    try {
-                        adapter.serializeCG(
-                            cgAlgorithm,
-                            projectSpec.target(projectsDir).getCanonicalPath,
-                            output,
-                            AdapterOptions.makeJavaOptions(
-                                projectSpec.main.orNull,
-                                projectSpec.allClassPathEntryPaths(projectsDir),
-                                jreLocations(projectSpec.java),
-                                analyzeJDK = false
-                            )
-                        )
-                    } catch {
-                        case e: Throwable =>
-                            if (config.debug) {
-                                println(e.printStackTrace())
-                            }
-                    } finally {
-                        output.close()
-                    }
-                    ow.synchronized {
-                        System.gc()
-
-                        val result = CGMatcher.matchCallSites(
-                            projectSpec,
-                            jreLocations(projectSpec.java),
-                            projectsDir,
-                            cgFile,
-                            config.debug
-                        )
-                        ow.write(s"\t${result.shortNotation}")
-                        fingerprintWriter.println(s"${projectSpec.name}\t${result.shortNotation}")
-                        fingerprintWriter.flush()
-                        println(s"${projectSpec.name}\t${result.shortNotation}")
+                var completed = false
+                val output = new BufferedWriter(new FileWriter(cgFile))
+                try {
+                    adapter.serializeCG(
+                        cgAlgorithm,
+                        projectSpec.target(projectsDir).getCanonicalPath,
+                        output,
+                        options
+                    )
+                    completed = true
+                } catch {
+                    case e: InterruptedException =>
+                        throw e
+                    case e: TimeoutException =>
+                        // the adapter enforces the timeout itself, e.g., Native Image
+                        throw e
+                    case e: Throwable =>
+                        if (config.debug) {
+                            e.printStackTrace()
+                        }
+                } finally {
+                    output.close()
+                }
 
-                    }
+                // the adapter may have swallowed the interrupt of a timeout; a partial call graph
+                // must be neither matched nor cached
+                if (Thread.currentThread().isInterrupted || scheduler.isCurrentTaskCancelled)
+                    throw new InterruptedException()
+
+                if (scheduler.workers == 1 && matcherPool.isEmpty && !adapter.isInstanceOf[ForkedTestAdapter])
+                    System.gc()
+
+                val assessment = CGMatcher.matchCallSites(
+                    projectSpec,
+                    jreLocations(projectSpec.java),
+                    projectsDir,
+                    cgFile,
+                    config.debug,
+                    matcherPool
+                )
+                val elapsed = System.nanoTime() - start
+                if (completed) {
+                    history.record(adapter, cgAlgorithm, projectSpec.name, elapsed, TimingHistory.peakMemory(outDir, startMillis))
+                    val reports = ResultCache.reportsWrittenSince(outDir, cgFile, startMillis)
+                    cacheAssessment(cacheKey, cgFile, reports, assessment, elapsed)
                 }
-                if (config.parallel) {
-                    future.onComplete {
-                        case Success(_) =>
-                        case Failure(e) => e.printStackTrace()
-                    }
+                (assessment, elapsed)
+            }
+        }
+    }
+
+    private def javaOptions(
+        projectSpec:  ProjectSpecification,
+        projectsDir:  File,
+        jreLocations: Map[Int, String],
+        outDir:       File,
+        config:       JCGConfig
+    ): AdapterOptions = {
+        AdapterOptions.makeJavaOptions(
+            projectSpec.main.orNull,
+            projectSpec.allClassPathEntryPaths(projectsDir),
+            jreLocations(projectSpec.java),
+            analyzeJDK = false,
+            outputDir = outDir.getAbsolutePath,
+            timeout = config.timeout
+        )
+    }
+
+    val WallClockFileName = "wall-clock.tsv"
+
+    /**
+     * Appends the wall-clock time of a run and its lower bound to [[WallClockFileName]], so that
+     * runs with different numbers of workers can be compared.
+     */
+    private def appendWallClock(
+        resultsDir: File,
+        algorithm:  String,
+        workers:    Int,
+        tests:      Int,
+        seconds:    Double,
+        lowerBound: Double
+    ): Unit = {
+        val file = new File(resultsDir, WallClockFileName)
+        val isNew = !file.exists()
+        val pw = new PrintWriter(new FileWriter(file, true))
+        if (isNew) pw.println("algorithm\tworkers\ttests\tseconds\tlowerBoundSeconds")
+        pw.println(f"$algorithm\t$workers\t$tests\t$seconds%.1f\t$lowerBound%.1f")
+        pw.close()
+    }
+
+    /**
+     * Runs the test cases through the stages of a [[PipelinedTestAdapter]] followed by a matching
+     * stage. Every stage has its own thread, so that different test cases are processed in
+     * different stages at the same time; at most `config.pipelineDepth` test cases are in the
+     * pipeline at once. The results are written in the order of `projectSpecFiles`.
+     *
+     * The timeout is enforced by the adapter; test cases that exceed it are reported as timeouts
+     * without matching. With a `matcherPool`, the call graphs of several test cases are matched at
+     * the same time on that pool. Test cases found in the `journal` are not run again, test cases
+     * found in the [[ResultCache]] are not analysed again.
+     */
+    private def runPipeline(
+        adapter:           PipelinedTestAdapter,
+        cgAlgorithm:       String,
+        projectSpecFiles:  Array[File],
+        projectsDir:       File,
+        jreLocations:      Map[Int, String],
+        config:            JCGConfig,
+        matcherPool:       Option[ForkJoinPool],
+        journal:           ResultJournal,
+        history:           TimingHistory,
+        ow:                BufferedWriter,
+        fingerprintWriter: PrintWriter
+    ): Unit = {
+        val stageExecutors = adapter.stages.map(stage => newStageExecutor(s"pipeline-$stage"))
+        val matchExecutor = matcherPool.getOrElse(newStageExecutor("pipeline-match"))
+        val depth = if (config.pipelineDepth > 0) config.pipelineDepth else adapter.stages.size + 1
+        val inFlight = new Semaphore(depth)
+
+        val results = new OrderedResults(projectSpecFiles.length, ow, fingerprintWriter)
+        val done = new CountDownLatch(projectSpecFiles.length)
+
+        try {
+            for ((psf, index) <- projectSpecFiles.zipWithIndex) {
+                val projectSpec = Json.parse(new FileInputStream(psf)).validate[ProjectSpecification].get
+
+                val outDir = EvaluationHelper.getOutputDirectory(adapter, cgAlgorithm, projectSpec, config.outputDir)
+                outDir.mkdirs()
+                val cgFile = new File(outDir, config.SERIALIZATION_FILE_NAME)
+                val options = javaOptions(projectSpec, projectsDir, jreLocations, outDir, config)
+
+                val journaled = journaledAssessment(journal, adapter, cgAlgorithm, projectSpec.name)
+                val cacheKey =
+                    if (journaled.isEmpty)
+                        resultCacheKey(adapter, cgAlgorithm, ResultCache.inputsOf(projectSpec, projectsDir), options)
+                    else None
+                val cached = cachedAssessment(cacheKey, cgFile, projectSpec.name)
+                if (journaled.isDefined) {
+                    results.complete(index, projectSpec.name, journaled.get)
+                    done.countDown()
+                } else if (cached.isDefined) {
+                    val (assessment, elapsed) = cached.get
+                    journalAssessment(journal, adapter, cgAlgorithm, projectSpec.name, assessment, elapsed)
+                    results.complete(index, projectSpec.name, assessment)
+                    done.countDown()
                 } else {
-                    tryAwaitGenerateCG(config.timeout, ow, fingerprintWriter, projectSpec.name, future)
+                    inFlight.acquire()
+
+                    if (cgFile.exists()) {
+                        cgFile.delete()
+                    }
+
+                    println(s"performing test case: ${projectSpec.name}")
+                    val startMillis = System.currentTimeMillis()
+                    val run = adapter.startRun(
+                        cgAlgorithm,
+                        projectSpec.target(projectsDir).getCanonicalPath,
+                        new BufferedWriter(new FileWriter(cgFile)),
+                        options
+                    )
+
+                    val stagesDone = stageExecutors.zipWithIndex.foldLeft(CompletableFuture.completedFuture[Unit](())) {
+                        case (previous, (executor, stage)) =>
+                            previous.thenRunAsync(() => run.runStage(stage), executor).thenApply(_ => ())
+                    }
+
+                    var elapsed = -1L
+                    stagesDone.handleAsync[Assessment]((_, failure) => {
+                        elapsed = run.finish()
+                        val cause = Option(failure).map {
+                            case e: CompletionException if e.getCause != null => e.getCause
+                            case e                                            => e
+                        }
+                        cause match {
+                            case Some(_: TimeoutException) =>
+                                Timeout
+                            case _ =>
+                                cause.foreach { e =>
+                                    println(s"[error] ${projectSpec.name}: ${e.getClass.getName} - ${e.getMessage}")
+                                    if (config.debug) e.printStackTrace()
+                                }
+                                val assessment = CGMatcher.matchCallSites(
+                                    projectSpec,
+                                    jreLocations(projectSpec.java),
+                                    projectsDir,
+                                    cgFile,
+                                    config.debug,
+                                    matcherPool
+                                )
+                                if (cause.isEmpty) {
+                                    history.record(adapter, cgAlgorithm, projectSpec.name, elapsed, TimingHistory.peakMemory(outDir, startMillis))
+                                    val reports = ResultCache.reportsWrittenSince(outDir, cgFile, startMillis)
+                                    cacheAssessment(cacheKey, cgFile, reports, assessment, elapsed)
+                                }
+                                assessment
+                        }
+                    }, matchExecutor).whenComplete((result, failure) => {
+                        if (failure != null && config.debug) failure.printStackTrace()
+                        val assessment = if (failure == null) result else Error
+                        journalAssessment(journal, adapter, cgAlgorithm, projectSpec.name, assessment, elapsed)
+                        results.complete(index, projectSpec.name, assessment)
+                        inFlight.release()
+                        done.countDown()
+                    })
                 }
             }
-            ow.newLine()
-            fingerprintWriter.close()
+            done.await()
+        } finally {
+            // the matcher pool is shared with the other algorithms
+            if (matcherPool.isEmpty) matchExecutor.shutdownNow()
+            stageExecutors.foreach(_.shutdownNow())
+        }
+    }
+
+    private def newStageExecutor(name: String): ExecutorService = {
+        Executors.newSingleThreadExecutor { (r: Runnable) =>
+            val thread = new Thread(r, name)
+            thread.setDaemon(true)
+            thread
         }
-        ow.close()
     }
 }
@@ -0,0 +1,129 @@
+import java.io.File
+import java.io.PrintWriter
+
+/**
+ * Aggregates the `analysis-stats.json` files the Native Image adapter writes next to each
+ * `cg.json` per test category (the test name without its number, e.g., `CFNE` for `CFNE3`) and
+ * optionally compares the analysis times against a baseline run, e.g., of another GraalVM build.
+ *
+ * Usage: `NativeImageStatsReport <resultsDir> [<baselineResultsDir> [<threshold>]]`
+ *
+ * The summary is printed and written to `<resultsDir>/native-image-stats.tsv`. With a baseline,
+ * all tests and categories whose analysis time changed by more than `threshold` (relative,
+ * default 0.1) and more than half a second are listed.
+ */
+object NativeImageStatsReport {
+
+    val SummaryFileName = "native-image-stats.tsv"
+
+    private val MinimalDeltaSeconds = 0.5
+
+    def main(args: Array[String]): Unit = {
+        assert(args.nonEmpty, "usage: NativeImageStatsReport <resultsDir> [<baselineResultsDir> [<threshold>]]")
+        val resultsDir = new File(args(0))
+        assert(resultsDir.isDirectory, s"$resultsDir is not a directory")
+
+        val current = collect(resultsDir)
+        println(s"found statistics of ${current.size} test(s) in $resultsDir")
+        summarize(resultsDir).foreach(println)
+
+        if (args.length > 1) {
+            val threshold = if (args.length > 2) args(2).toDouble else 0.1
+            compare(current, collect(new File(args(1))), threshold)
+        }
+    }
+
+    /**
+     * Reads all `resultsDir/<test>/NativeImage/<algorithm>/analysis-stats.json` files, keyed
+     * by algorithm and test name.
+     */
+    def collect(resultsDir: File): Map[(String, String), NativeImageStats] = {
+        val stats = for {
+            test <- Option(resultsDir.listFiles(_.isDirectory)).toSeq.flatten
+            framework <- Option(new File(test, NativeImageJCGAdapter.frameworkName).listFiles(_.isDirectory)).toSeq.flatten
+            file = new File(framework, NativeImageStats.FileName)
+            if file.isFile
+        } yield (framework.getName, test.getName) -> NativeImageStats.read(file.toPath)
+        stats.toMap
+    }
+
+    def category(testName: String): String = testName.replaceAll("\\d+$", "")
+
+    /**
+     * Writes the per-category summary of the statistics in `resultsDir` to [[SummaryFileName]].
+     *
+     * @return The lines of the summary, empty if there are no statistics.
+     */
+    def summarize(resultsDir: File): Seq[String] = {
+        val stats = collect(resultsDir)
+        if (stats.isEmpty) {
+            Seq.empty
+        } else {
+            val header = Seq(
+                "algorithm", "category", "tests", "analysis sec. (sum)", "analysis sec. (mean)",
+                "analysis sec. (max)", "peak RSS MiB (mean)", "reachable types (mean)", "reachable methods (mean)"
+            ).mkString("\t")
+
+            val rows = stats.groupBy { case ((algorithm, test), _) => (algorithm, category(test)) }.toSeq.sortBy(_._1).map {
+                case ((algorithm, category), group) =>
+                    val values = group.values.toSeq
+                    val analysis = values.flatMap(_.analysisSeconds)
+                    Seq(
+                        algorithm,
+                        category,
+                        values.size.toString,
+                        f"${analysis.sum}%.2f",
+                        f"${mean(analysis)}%.2f",
+                        f"${if (analysis.isEmpty) 0d else analysis.max}%.2f",
+                        f"${mean(values.flatMap(_.peakRssBytes).map(_ / (1024d * 1024)))}%.1f",
+                        f"${mean(values.flatMap(_.reachable.get("types")).map(_.reachable.toDouble))}%.1f",
+                        f"${mean(values.flatMap(_.reachable.get("methods")).map(_.reachable.toDouble))}%.1f"
+                    ).mkString("\t")
+            }
+
+            val lines = header +: rows
+            val pw = new PrintWriter(new File(resultsDir, SummaryFileName))
+            lines.foreach(pw.println)
+            pw.close()
+            lines
+        }
+    }
+
+    /**
+     * Prints the tests and categories whose analysis time changed noticeably in `current`
+     * compared to `baseline`.
+     */
+    def compare(
+        current:   Map[(String, String), NativeImageStats],
+        baseline:  Map[(String, String), NativeImageStats],
+        threshold: Double
+    ): Unit = {
+        val analysisTimes = for {
+            (key, stats) <- current.toSeq
+            now <- stats.analysisSeconds
+            before <- baseline.get(key).flatMap(_.analysisSeconds)
+        } yield key -> (before, now)
+
+        println(s"comparing ${analysisTimes.size} test(s) with the baseline (threshold ${threshold * 100}%)")
+
+        def report(name: String, before: Double, now: Double): Unit = {
+            val delta = now - before
+            if (math.abs(delta) > MinimalDeltaSeconds && before > 0 && math.abs(delta / before) > threshold) {
+                val kind = if (delta > 0) "REGRESSION" else "improvement"
+                println(f"$kind\t$name\t$before%.2f s -> $now%.2f s (${delta / before * 100}%+.1f%%)")
+            }
+        }
+
+        for (((algorithm, test), (before, now)) <- analysisTimes.sortBy(_._1))
+            report(s"$algorithm/$test", before, now)
+
+        val categories = analysisTimes.groupBy { case ((algorithm, test), _) => (algorithm, category(test)) }
+        for (((algorithm, category), group) <- categories.toSeq.sortBy(_._1)) {
+            val times = group.map(_._2)
+            report(s"$algorithm/$category (sum)", times.map(_._1).sum, times.map(_._2).sum)
+        }
+    }
+
+    private def mean(values: Seq[Double]): Double =
+        if (values.isEmpty) 0d else values.sum / values.size
+}
@@ -6,7 +6,7 @@
 object ProjectSpecificEvaluator {
 
     def projectSpecificEvaluation(
-        reachableMethods:   Set[Method], // from serialized call graph
+        callGraph:          IdCallGraph, // from serialized call graph
         locationsMap:       Map[String, Set[Method]], // feature id (query) -> locations
         supportedTestCases: Set[String] // contains supported feature ids (test cases)
     ): Iterable[(Method, String)] = {
@@ -14,7 +14,7 @@ object ProjectSpecificEvaluator {
             (featureID, locations) ← locationsMap
             if !isFeatureSupported(featureID, supportedTestCases)
             location ← locations
-            if reachableMethods contains location
+            if callGraph isReachable location
         } yield (location, featureID)
     }
 
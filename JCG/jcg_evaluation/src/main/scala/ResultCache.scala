@@ -0,0 +1,131 @@
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.StandardCopyOption
+import org.apache.commons.io.FileUtils
+
+import scala.util.control.NonFatal
+
+/**
+ * Content-addressed cache for the call graphs computed by the adapters and their assessments.
+ *
+ * Entries are keyed by the adapter, its version (see [[TestAdapter.frameworkVersion]]), the
+ * algorithm, the contents of the analysed project and the adapter options that may change the
+ * result, so an analysis only has to run again if one of them changes. Entries with an assessment
+ * are additionally keyed by the version of the code that computed it. An entry holds the
+ * serialized call graph, the reports the adapter wrote next to it, the assessment and the time
+ * the analysis took. The cache is disabled unless `JCG_RESULT_CACHE=true`, as a cached result
+ * reports the time of the run it was cached from. It lives in `./cache/results`;
+ * `JCG_RESULT_CACHE_DIR` overrides the location.
+ */
+object ResultCache {
+
+    case class Entry(assessment: String, elapsedNanos: Long)
+
+    private val CallGraphFileName = "cg"
+    private val ReportsDirectoryName = "reports"
+    private val ResultFileName = "result.tsv"
+
+    def enabled: Boolean = sys.env.get("JCG_RESULT_CACHE").contains("true")
+
+    def cacheDirectory: Path = Paths.get(sys.env.getOrElse("JCG_RESULT_CACHE_DIR", "./cache/results"))
+
+    /**
+     * Computes the cache key of an analysis run.
+     *
+     * @param inputs  The analysed files, i.e., the target and the class path of the project.
+     *                Jars are hashed by their contents, directories by their files.
+     * @param options The options passed to the adapter.
+     * @param matcherVersion The version of the code that assesses the call graph, `-` if the entry
+     *                       holds no assessment.
+     */
+    def key(
+        adapter:        TestAdapter,
+        algorithm:      String,
+        inputs:         Seq[File],
+        options:        AdapterOptions,
+        matcherVersion: String         = "-"
+    ): String = {
+        val hash = new ContentHash()
+            .update(adapter.frameworkName)
+            .update(adapter.frameworkVersion)
+            .update(matcherVersion)
+            .update(algorithm)
+            .update(inputs.size.toString)
+        for (input <- inputs) {
+            val path = input.toPath
+            if (Files.isDirectory(path)) hash.update("dir").updateDirectory(path)
+            else if (input.getName.endsWith(".jar") && Files.isRegularFile(path)) hash.update("jar").updateJarContents(path)
+            else if (Files.isRegularFile(path)) hash.update("file").updateFile(path)
+            else hash.update(s"missing:${input.getPath}")
+        }
+        options.resultRelevantOptions.foreach(hash.update)
+        hash.hex
+    }
+
+    /**
+     * Copies the cached call graph for `key` to `cgFile` and the cached reports to the directory
+     * of `cgFile`.
+     *
+     * @return The cached result, or `None` if there is no entry for `key`.
+     */
+    def restore(key: String, cgFile: File): Option[Entry] = {
+        val entry = cacheDirectory.resolve(key)
+        val resultFile = entry.resolve(ResultFileName)
+        if (!Files.isRegularFile(resultFile))
+            return None;
+
+        Files.readString(resultFile).trim.split("\t") match {
+            case Array(assessment, elapsed) if elapsed.toLongOption.isDefined =>
+                Files.copy(entry.resolve(CallGraphFileName), cgFile.toPath, StandardCopyOption.REPLACE_EXISTING)
+                val reports = entry.resolve(ReportsDirectoryName).toFile
+                if (reports.isDirectory)
+                    FileUtils.copyDirectory(reports, cgFile.getParentFile)
+                Some(Entry(assessment, elapsed.toLong))
+            case _ =>
+                None
+        }
+    }
+
+    /**
+     * Stores `cgFile`, the `reports` and the `result` as entry for `key`. Failing to do so only
+     * disables caching for this entry.
+     */
+    def store(key: String, cgFile: File, reports: Seq[File], result: Entry): Unit = {
+        val entry = cacheDirectory.resolve(key)
+        val temp = cacheDirectory.resolve(s"$key.${System.nanoTime()}.tmp")
+        try {
+            Files.createDirectories(temp.resolve(ReportsDirectoryName))
+            Files.copy(cgFile.toPath, temp.resolve(CallGraphFileName))
+            for (report <- reports if report.isFile)
+                Files.copy(report.toPath, temp.resolve(ReportsDirectoryName).resolve(report.getName))
+            Files.writeString(temp.resolve(ResultFileName), s"${result.assessment}\t${result.elapsedNanos}\n")
+            if (!Files.exists(entry))
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE)
+        } catch {
+            case NonFatal(e) =>
+                println(s"[warn] Could not cache the result in $entry: ${e.getMessage}")
+        } finally {
+            if (Files.exists(temp))
+                FileUtils.deleteDirectory(temp.toFile)
+        }
+    }
+
+    /**
+     * The files the adapter wrote to `outDir` besides the call graph since `startMillis`.
+     */
+    def reportsWrittenSince(outDir: File, cgFile: File, startMillis: Long): Seq[File] = {
+        // some file systems only store the modification time in seconds
+        val since = startMillis / 1000 * 1000
+        Option(outDir.listFiles()).getOrElse(Array.empty[File]).toSeq.filter { f =>
+            f.isFile && f != cgFile && f.lastModified() >= since
+        }
+    }
+
+    /**
+     * The files analysed for a project: its target and its class path.
+     */
+    def inputsOf(projectSpec: ProjectSpecification, projectsDir: File): Seq[File] =
+        projectSpec.target(projectsDir) +: projectSpec.allClassPathEntryFiles(projectsDir).toSeq
+}
@@ -0,0 +1,72 @@
+import java.io.File
+import java.io.FileWriter
+import java.io.PrintWriter
+import scala.collection.mutable
+import scala.io.Source
+import scala.util.Using
+
+/**
+ * An append-only journal of the completed runs of an evaluation, one line per
+ * (adapter, algorithm, project), so that an interrupted evaluation can be resumed.
+ *
+ * Every entry is flushed as soon as it is recorded; a last line that was cut off by a crash is
+ * ignored when the journal is read.
+ *
+ * @param file   The journal file.
+ * @param resume If `false`, the journal is cleared, otherwise its entries are loaded.
+ */
+class ResultJournal(file: File, resume: Boolean) {
+
+    private val entries = mutable.Map.empty[(String, String, String), ResultJournal.Entry]
+
+    if (resume && file.length() > 0) {
+        Using.resource(Source.fromFile(file)) { source =>
+            val lines = source.getLines().toSeq
+            val completeLines = if (endsWithNewLine) lines else lines.dropRight(1)
+            for (line <- completeLines) line.split("\t", -1) match {
+                case Array(adapter, algorithm, project, assessment, elapsed) if elapsed.matches("-?\\d+") =>
+                    entries((adapter, algorithm, project)) = ResultJournal.Entry(assessment, elapsed.toLong)
+                case _ =>
+            }
+        }
+    }
+
+    private val writer = new PrintWriter(new FileWriter(file, resume))
+
+    // a line cut off by a crash must not swallow the next entry
+    if (resume && file.length() > 0 && !endsWithNewLine)
+        writer.println()
+
+    /**
+     * The completed entry for the given run, if any.
+     */
+    def get(adapter: TestAdapter, algorithm: String, project: String): Option[ResultJournal.Entry] =
+        synchronized { entries.get((adapter.frameworkName, algorithm, project)) }
+
+    /**
+     * Records a completed run.
+     *
+     * @param assessment   The short notation of the assessment, or `-` if there is none.
+     * @param elapsedNanos The duration of the run, or -1 if unknown.
+     */
+    def record(adapter: TestAdapter, algorithm: String, project: String, assessment: String, elapsedNanos: Long): Unit =
+        synchronized {
+            entries((adapter.frameworkName, algorithm, project)) = ResultJournal.Entry(assessment, elapsedNanos)
+            writer.println(s"${adapter.frameworkName}\t$algorithm\t$project\t$assessment\t$elapsedNanos")
+            writer.flush()
+        }
+
+    def close(): Unit = synchronized { writer.close() }
+
+    private def endsWithNewLine: Boolean = {
+        Using.resource(new java.io.RandomAccessFile(file, "r")) { raf =>
+            raf.seek(raf.length() - 1)
+            raf.read() == '\n'
+        }
+    }
+}
+
+object ResultJournal {
+
+    case class Entry(assessment: String, elapsedNanos: Long)
+}
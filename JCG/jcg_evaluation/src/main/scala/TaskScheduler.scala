@@ -0,0 +1,205 @@
+import java.util.concurrent.CancellationException
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.FutureTask
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
+import scala.collection.mutable
+import scala.concurrent.duration.FiniteDuration
+import scala.util.Failure
+import scala.util.Success
+import scala.util.Try
+
+/**
+ * Runs tasks on a fixed number of worker threads.
+ *
+ * The timeout of a task starts when a worker picks it up, not when it is submitted. Once it has
+ * passed, the task is cancelled and its worker is interrupted; a task that ignores the interrupt
+ * keeps its worker busy until it returns, but its result is discarded.
+ *
+ * With a `memoryBudget`, a task is only started if its estimated memory fits into what the
+ * running tasks leave of the budget. Tasks are started in the order they were submitted, except
+ * that a task that does not fit is passed by later tasks that do; hence, submitting the largest
+ * tasks first lets the smaller ones fill the gaps. A task that needs more than the whole budget
+ * is started once no other task is running.
+ *
+ * @param workers      The number of tasks running at the same time.
+ * @param timeout      The maximal running time of a single task, if any.
+ * @param memoryBudget The memory in bytes all running tasks may use together, if limited.
+ */
+class TaskScheduler(
+        val workers:  Int,
+        timeout:      Option[FiniteDuration],
+        memoryBudget: Option[Long]           = None
+) extends AutoCloseable {
+
+    private val executor = Executors.newFixedThreadPool(workers, daemonThreads("jcg-worker"))
+
+    private val watchdog = Executors.newSingleThreadScheduledExecutor(daemonThreads("jcg-watchdog"))
+
+    private val tasks = new ConcurrentLinkedQueue[Task[_]]()
+
+    // the task running on the current worker thread
+    private val currentTask = new ThreadLocal[Task[_]]
+
+    // the tasks that have not been started yet, guarded by `this`
+    private val pending = mutable.ArrayBuffer.empty[Task[_]]
+    private var running = 0
+    private var reservedMemory = 0L
+
+    /**
+     * Schedules `body` to run on the next free worker.
+     */
+    def submit[T](body: => T): Task[T] = submitRequiring(0L)(body)
+
+    /**
+     * Schedules `body`, which is estimated to need `memory` bytes, to run on the next free worker
+     * once it fits into the memory budget.
+     */
+    def submitRequiring[T](memory: Long)(body: => T): Task[T] = {
+        val task = new Task[T](memory, () => body)
+        tasks.add(task)
+        synchronized {
+            pending += task
+            dispatch()
+        }
+        task
+    }
+
+    /**
+     * Whether the task running on the calling worker has been cancelled, e.g., because it timed
+     * out. Unlike the interrupt flag, this cannot be cleared by the code the task calls.
+     */
+    def isCurrentTaskCancelled: Boolean = Option(currentTask.get).exists(_.futureTask.isCancelled)
+
+    /**
+     * Cancels all tasks that have not finished yet.
+     */
+    def cancelAll(): Unit = tasks.forEach(_.cancel())
+
+    /**
+     * Cancels all unfinished tasks and stops the workers.
+     */
+    override def close(): Unit = {
+        synchronized { pending.clear() }
+        cancelAll()
+        executor.shutdownNow()
+        watchdog.shutdownNow()
+    }
+
+    /**
+     * Starts pending tasks as long as there are free workers and enough memory.
+     */
+    private def dispatch(): Unit = synchronized {
+        var i = 0
+        while (i < pending.size && running < workers) {
+            val task = pending(i)
+            if (task.futureTask.isCancelled) {
+                pending.remove(i)
+            } else if (fits(task.memory)) {
+                pending.remove(i)
+                running += 1
+                reservedMemory += task.memory
+                // also frees the worker if the task was cancelled before it started
+                executor.execute(() => try task.futureTask.run() finally finished(task))
+            } else {
+                i += 1
+            }
+        }
+    }
+
+    private def fits(memory: Long): Boolean = memoryBudget.forall { budget =>
+        running == 0 || reservedMemory + memory <= budget
+    }
+
+    private def finished(task: Task[_]): Unit = synchronized {
+        running -= 1
+        reservedMemory -= task.memory
+        dispatch()
+    }
+
+    /**
+     * A task submitted to the scheduler.
+     */
+    class Task[T] private[TaskScheduler] (private[TaskScheduler] val memory: Long, body: () => T) {
+        @volatile private var timedOut = false
+        @volatile private var runningNanos = -1L
+
+        private[TaskScheduler] val futureTask: FutureTask[T] = new FutureTask[T](() => {
+            val timer = timeout.map { t =>
+                watchdog.schedule(
+                    (() => { timedOut = true; cancel() }): Runnable,
+                    t.toMillis,
+                    TimeUnit.MILLISECONDS
+                )
+            }
+            val start = System.nanoTime()
+            currentTask.set(this)
+            try {
+                body()
+            } finally {
+                currentTask.remove()
+                runningNanos = System.nanoTime() - start
+                timer.foreach(_.cancel(false))
+                tasks.remove(this)
+            }
+        })
+
+        /**
+         * How long the task kept its worker busy, once it has finished.
+         */
+        def runningTime: Option[Long] = Some(runningNanos).filter(_ >= 0)
+
+        /**
+         * Cancels the task, interrupting it if it is already running.
+         */
+        def cancel(): Unit = futureTask.cancel(true)
+
+        /**
+         * Waits until the task has finished.
+         *
+         * @return The result of the task, a [[TimeoutException]] if it timed out, a
+         *         [[CancellationException]] if it was cancelled otherwise, or the exception it threw.
+         */
+        def await(): Try[T] = {
+            try {
+                Success(futureTask.get())
+            } catch {
+                case _: CancellationException if timedOut =>
+                    Failure(new TimeoutException(s"timed out after ${timeout.get}"))
+                case e: ExecutionException =>
+                    Failure(e.getCause)
+                case e: CancellationException =>
+                    Failure(e)
+            }
+        }
+    }
+
+    private def daemonThreads(prefix: String): ThreadFactory = {
+        val count = new AtomicInteger()
+        (r: Runnable) => {
+            val thread = new Thread(r, s"$prefix-${count.incrementAndGet()}")
+            thread.setDaemon(true)
+            thread
+        }
+    }
+}
+
+object TaskScheduler {
+
+    /**
+     * Parses a memory size such as `512m` or `48g` (like `-Xmx`) into bytes.
+     */
+    def parseMemorySize(size: String): Option[Long] = {
+        val units = Map('k' -> 10, 'm' -> 20, 'g' -> 30, 't' -> 40)
+        val trimmed = size.trim.toLowerCase
+        if (trimmed.isEmpty) None
+        else units.get(trimmed.last) match {
+            case Some(shift) => trimmed.init.toLongOption.filter(_ > 0).map(_ << shift)
+            case None        => trimmed.toLongOption.filter(_ > 0)
+        }
+    }
+}
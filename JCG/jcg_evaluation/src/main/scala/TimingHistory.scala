@@ -0,0 +1,139 @@
+import java.io.File
+import java.io.FileWriter
+import java.io.PrintWriter
+import play.api.libs.json.JsValue
+import play.api.libs.json.Json
+import scala.collection.mutable
+import scala.io.Source
+import scala.util.Try
+import scala.util.Using
+
+/**
+ * The durations and the peak memory of earlier runs per (adapter, algorithm, project), kept
+ * across evaluations in a TSV file with the columns `adapter`, `algorithm`, `project`,
+ * `elapsedNanos` and `peakMemoryBytes`. Unknown values are stored as -1; a later line
+ * overrides the known values of earlier lines for the same run.
+ *
+ * @param file The history file, created on the first record.
+ */
+class TimingHistory(file: File) {
+
+    private val entries = mutable.Map.empty[(String, String, String), TimingHistory.Entry]
+
+    if (file.exists()) {
+        Using.resource(Source.fromFile(file)) { source =>
+            for (line <- source.getLines()) line.split("\t", -1) match {
+                case Array(adapter, algorithm, project, elapsed, memory)
+                    if elapsed.toLongOption.isDefined && memory.toLongOption.isDefined =>
+                    update((adapter, algorithm, project), TimingHistory.Entry(elapsed.toLong, memory.toLong))
+                case _ =>
+            }
+        }
+    }
+
+    /**
+     * The last known duration and peak memory of a run, if any.
+     */
+    def get(adapter: TestAdapter, algorithm: String, project: String): Option[TimingHistory.Entry] =
+        synchronized { entries.get((adapter.frameworkName, algorithm, project)) }
+
+    /**
+     * Estimates the peak memory of a run: the peak of its last run, or, if it is unknown, the
+     * largest peak of the same algorithm on any other project.
+     */
+    def estimatedMemory(adapter: TestAdapter, algorithm: String, project: String): Option[Long] = synchronized {
+        get(adapter, algorithm, project).map(_.peakMemoryBytes).filter(_ > 0).orElse {
+            val peaks = entries.collect {
+                case ((a, alg, _), entry) if a == adapter.frameworkName && alg == algorithm && entry.peakMemoryBytes > 0 =>
+                    entry.peakMemoryBytes
+            }
+            peaks.maxOption
+        }
+    }
+
+    /**
+     * Estimates the durations of the runs of the given projects in nanoseconds: the duration of
+     * the last run of a project, or, if it is unknown, the size of its input multiplied by the
+     * average time per byte of the projects with known durations. If no duration is known, the
+     * input sizes are returned, which still order the projects.
+     *
+     * @param projects The names of the projects and the sizes of their inputs in bytes.
+     */
+    def estimatedDurations(adapter: TestAdapter, algorithm: String, projects: Seq[(String, Long)]): Seq[Double] =
+        synchronized {
+            val known = projects.map { case (project, _) =>
+                get(adapter, algorithm, project).map(_.elapsedNanos).filter(_ >= 0)
+            }
+            val knownSizes = projects.zip(known).collect { case ((_, size), Some(_)) => size }.sum
+            val nanosPerByte =
+                if (knownSizes > 0) known.flatten.sum.toDouble / knownSizes
+                else 1d
+            projects.zip(known).map {
+                case (_, Some(elapsed)) => elapsed.toDouble
+                case ((_, size), None)  => size * nanosPerByte
+            }
+        }
+
+    /**
+     * Records a run; nothing is recorded if both values are unknown.
+     *
+     * @param elapsedNanos    The duration of the run, or -1 if unknown.
+     * @param peakMemoryBytes The peak memory of the run, or -1 if unknown.
+     */
+    def record(adapter: TestAdapter, algorithm: String, project: String, elapsedNanos: Long, peakMemoryBytes: Long): Unit =
+        synchronized {
+            if (elapsedNanos >= 0 || peakMemoryBytes > 0) {
+                update((adapter.frameworkName, algorithm, project), TimingHistory.Entry(elapsedNanos, peakMemoryBytes))
+                val pw = new PrintWriter(new FileWriter(file, true))
+                pw.println(s"${adapter.frameworkName}\t$algorithm\t$project\t$elapsedNanos\t$peakMemoryBytes")
+                pw.close()
+            }
+        }
+
+    private def update(key: (String, String, String), entry: TimingHistory.Entry): Unit = {
+        val merged = entries.get(key) match {
+            case Some(old) => TimingHistory.Entry(
+                if (entry.elapsedNanos >= 0) entry.elapsedNanos else old.elapsedNanos,
+                if (entry.peakMemoryBytes > 0) entry.peakMemoryBytes else old.peakMemoryBytes
+            )
+            case None => entry
+        }
+        entries(key) = merged
+    }
+}
+
+object TimingHistory {
+
+    val FileName = "timing-history.tsv"
+
+    case class Entry(elapsedNanos: Long, peakMemoryBytes: Long)
+
+    /**
+     * The peak memory of the run whose reports are in `outDir`: the peak heap of the worker JVM
+     * (`worker.json`, see [[ForkedTestAdapter]]) plus the largest peak RSS of the external
+     * processes of a phase (`timings.json` of the Native Image adapter), or -1 if neither is
+     * known. Only `--fork` reports the heap; adapters running in the evaluation's JVM report
+     * nothing, except for the processes of Native Image.
+     *
+     * @param startMillis The start of the run; older reports, e.g., of an earlier run with
+     *                    `--fork`, are ignored.
+     */
+    def peakMemory(outDir: File, startMillis: Long): Long = {
+        val workerHeap = readReport(new File(outDir, ForkedTestAdapter.ReportFileName), startMillis).flatMap { json =>
+            (json \ "peakHeapBytes").asOpt[Long]
+        }
+        val processRss = readReport(new File(outDir, "timings.json"), startMillis).flatMap { json =>
+            (json \ "phases").asOpt[Seq[JsValue]].getOrElse(Seq.empty).flatMap { phase =>
+                (phase \ "process" \ "peakRssBytes").asOpt[Long]
+            }.maxOption
+        }
+        if (workerHeap.isEmpty && processRss.isEmpty) -1L
+        else workerHeap.getOrElse(0L) + processRss.getOrElse(0L)
+    }
+
+    private def readReport(file: File, startMillis: Long): Option[JsValue] = {
+        // some file systems only store the modification time in seconds
+        if (!file.isFile || file.lastModified() < startMillis / 1000 * 1000) None
+        else Try(Using.resource(Source.fromFile(file))(source => Json.parse(source.mkString))).toOption
+    }
+}
@@ -0,0 +1,169 @@
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.File
+import java.io.IOException
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+import java.net.URLClassLoader
+import java.nio.file.Paths
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * A pool of worker JVMs running the adapters, see [[AdapterWorker]].
+ *
+ * Every worker has its own heap of `heap` (a `-Xmx` value), so that the state an analysis
+ * leaves behind, e.g., Soot's singletons, cannot exhaust the memory of the evaluation. A worker
+ * is replaced after `maxRuns` runs or once more than `heapThreshold` of its heap is still in use
+ * after a run. At most `size` runs happen at the same time; idle workers are reused.
+ *
+ * A run that is interrupted, e.g., by a timeout, kills its worker and all of its child processes.
+ */
+class WorkerPool(size: Int, heap: String, maxRuns: Int, heapThreshold: Double) extends AutoCloseable {
+
+    private val slots = new Semaphore(size, true)
+
+    private val idle = new ConcurrentLinkedQueue[Worker]()
+
+    // all running workers, including busy ones
+    private val workers = ConcurrentHashMap.newKeySet[Worker]()
+
+    private val workerCount = new AtomicInteger()
+
+    private val readers = Executors.newCachedThreadPool { (r: Runnable) =>
+        val thread = new Thread(r, "worker-reader")
+        thread.setDaemon(true)
+        thread
+    }
+
+    private val shutdownHook = new Thread(() => workers.forEach(_.destroy()), "worker-cleanup")
+    Runtime.getRuntime.addShutdownHook(shutdownHook)
+
+    /**
+     * Runs `request` on an idle worker, starting a new one if there is none.
+     */
+    def run(request: AdapterWorker.Request): AdapterWorker.Response = {
+        slots.acquire()
+        try {
+            val worker = Option(idle.poll()).getOrElse(new Worker(workerCount.incrementAndGet()))
+            val response =
+                try {
+                    worker.run(request)
+                } catch {
+                    case e: Throwable =>
+                        worker.destroy()
+                        throw e
+                }
+
+            if (worker.runs >= maxRuns) {
+                worker.stop()
+            } else if (response.usedHeap > heapThreshold * response.maxHeap) {
+                println(s"[info] replacing worker ${worker.id}, ${response.usedHeap >> 20} MB of its heap are still in use")
+                worker.stop()
+            } else {
+                idle.add(worker)
+            }
+            response
+        } finally {
+            slots.release()
+        }
+    }
+
+    /**
+     * Stops all workers.
+     */
+    override def close(): Unit = {
+        var worker = idle.poll()
+        while (worker != null) {
+            worker.stop()
+            worker = idle.poll()
+        }
+        workers.forEach(_.destroy())
+        readers.shutdownNow()
+        Runtime.getRuntime.removeShutdownHook(shutdownHook)
+    }
+
+    private class Worker(val id: Int) {
+        private val process = new ProcessBuilder(
+            Paths.get(System.getProperty("java.home"), "bin", "java").toString,
+            s"-Xmx$heap",
+            "-cp",
+            WorkerPool.classPath,
+            "AdapterWorker"
+        ).redirectError(ProcessBuilder.Redirect.INHERIT).start()
+        workers.add(this)
+
+        private val requests = new ObjectOutputStream(new BufferedOutputStream(process.getOutputStream))
+        requests.flush()
+
+        // blocks until the worker has written the stream header
+        private lazy val responses = new ObjectInputStream(new BufferedInputStream(process.getInputStream))
+
+        var runs = 0
+
+        def run(request: AdapterWorker.Request): AdapterWorker.Response = {
+            runs += 1
+            val response = CompletableFuture.supplyAsync(
+                () => responses.readObject().asInstanceOf[AdapterWorker.Response],
+                readers
+            )
+            requests.writeObject(request)
+            requests.flush()
+            requests.reset()
+            try {
+                response.get()
+            } catch {
+                case e: ExecutionException =>
+                    throw new IOException(s"worker $id terminated unexpectedly", e.getCause)
+            }
+        }
+
+        /**
+         * Lets the worker exit after its current run.
+         */
+        def stop(): Unit = {
+            try {
+                requests.close()
+                if (!process.waitFor(10, TimeUnit.SECONDS))
+                    destroy()
+            } catch {
+                case _: IOException => destroy()
+            }
+            workers.remove(this)
+        }
+
+        def destroy(): Unit = {
+            MonitoredProcess.destroyTree(process.toHandle)
+            workers.remove(this)
+        }
+    }
+}
+
+object WorkerPool {
+
+    val DefaultHeap = "4g"
+
+    val DefaultMaxRuns = 20
+
+    val DefaultHeapThreshold = 0.75
+
+    /**
+     * The class path of the evaluation, also if it is run by sbt in the same JVM.
+     */
+    lazy val classPath: String = {
+        val loaderEntries = Iterator.iterate(getClass.getClassLoader)(_.getParent).takeWhile(_ != null).flatMap {
+            case loader: URLClassLoader =>
+                loader.getURLs.iterator.filter(_.getProtocol == "file").map(url => Paths.get(url.toURI).toString)
+            case _ =>
+                Iterator.empty
+        }.toSeq
+        val entries = loaderEntries ++ System.getProperty("java.class.path").split(File.pathSeparator)
+        entries.filter(_.nonEmpty).distinct.mkString(File.pathSeparator)
+    }
+}
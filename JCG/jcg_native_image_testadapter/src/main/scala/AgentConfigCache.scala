@@ -0,0 +1,69 @@
+import java.nio.file.{Files, Path, Paths, StandardCopyOption}
+import org.apache.commons.io.FileUtils
+
+import scala.util.control.NonFatal
+
+/**
+ * Content-addressed cache for the reachability metadata generated by the native-image-agent.
+ *
+ * Entries are keyed by the contents of the test jar, the GraalVM version and the agent options,
+ * so the agent only has to run again if one of them changes. The cache lives in
+ * `./cache/native-image-agent`; `JCG_AGENT_CACHE_DIR` overrides the location and
+ * `JCG_AGENT_CACHE=false` disables the cache.
+ */
+object AgentConfigCache {
+
+    def enabled: Boolean = !sys.env.get("JCG_AGENT_CACHE").contains("false")
+
+    def cacheDirectory: Path =
+        Paths.get(sys.env.getOrElse("JCG_AGENT_CACHE_DIR", "./cache/native-image-agent"))
+
+    /**
+     * Computes the cache key of an agent run.
+     *
+     * @param jarFile      The path to the JAR file executed under the agent.
+     * @param graalVersion The version information of the GraalVM distribution.
+     * @param agentOptions The agent options, except for the output directory.
+     */
+    def key(jarFile: Path, graalVersion: String, agentOptions: Seq[String]): String = {
+        val hash = new ContentHash().updateJarContents(jarFile).update(graalVersion)
+        agentOptions.foreach(hash.update)
+        hash.hex
+    }
+
+    /**
+     * Replaces the contents of `configOutputDir` with the cached metadata for `key`.
+     *
+     * @return Whether there was a cache entry for `key`.
+     */
+    def restore(key: String, configOutputDir: Path): Boolean = {
+        val entry = cacheDirectory.resolve(key)
+        if (!Files.isDirectory(entry))
+            return false;
+
+        if (Files.exists(configOutputDir))
+            FileUtils.deleteDirectory(configOutputDir.toFile)
+        FileUtils.copyDirectory(entry.toFile, configOutputDir.toFile)
+        true
+    }
+
+    /**
+     * Stores the metadata in `configOutputDir` as entry for `key`. Failing to do so only
+     * disables caching for this entry.
+     */
+    def store(key: String, configOutputDir: Path): Unit = {
+        val entry = cacheDirectory.resolve(key)
+        val temp = cacheDirectory.resolve(s"$key.${System.nanoTime()}.tmp")
+        try {
+            FileUtils.copyDirectory(configOutputDir.toFile, temp.toFile)
+            if (!Files.exists(entry))
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE)
+        } catch {
+            case NonFatal(e) =>
+                println(s"[warn] Could not cache agent metadata in $entry: ${e.getMessage}")
+        } finally {
+            if (Files.exists(temp))
+                FileUtils.deleteDirectory(temp.toFile)
+        }
+    }
+}
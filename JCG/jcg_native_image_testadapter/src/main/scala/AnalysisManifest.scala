@@ -0,0 +1,55 @@
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path}
+
+/**
+ * Describes the inputs of a native-image analysis run: the test jar, the reachability metadata,
+ * the exact native-image command line and the GraalVM version.
+ *
+ * In incremental mode (`JCG_NATIVE_IMAGE_INCREMENTAL=true`), the manifest is stored next to the
+ * `call_tree_*.csv` files and the analysis is skipped if the manifest of the next run is equal.
+ */
+object AnalysisManifest {
+
+    val FileName = "analysis.manifest"
+
+    val CallTreeFiles: Seq[String] =
+        Seq("call_tree_methods.csv", "call_tree_invokes.csv", "call_tree_targets.csv")
+
+    def enabled: Boolean = sys.env.get("JCG_NATIVE_IMAGE_INCREMENTAL").contains("true")
+
+    /**
+     * Computes the manifest of a native-image run.
+     *
+     * @param jarFile            The path to the JAR file.
+     * @param metadataDirectory  The directory passed as configuration file directory.
+     * @param nativeImageCommand The native-image command line.
+     * @param graalVersion       The version information of the GraalVM distribution.
+     */
+    def apply(
+        jarFile:            Path,
+        metadataDirectory:  Path,
+        nativeImageCommand: Seq[String],
+        graalVersion:       String
+    ): String = {
+        Seq(
+            s"jar=${new ContentHash().updateJarContents(jarFile).hex}",
+            s"metadata=${new ContentHash().updateDirectory(metadataDirectory).hex}",
+            s"graal=${new ContentHash().update(graalVersion).hex}",
+            s"command=${nativeImageCommand.mkString(" ")}"
+        ).mkString("", "\n", "\n")
+    }
+
+    /**
+     * Whether `callGraphDir` holds the call tree of a run with the given manifest.
+     */
+    def isUpToDate(callGraphDir: Path, manifest: String): Boolean = {
+        val manifestFile = callGraphDir.resolve(FileName)
+        CallTreeFiles.forall(file => Files.isRegularFile(callGraphDir.resolve(file))) &&
+            Files.isRegularFile(manifestFile) &&
+            Files.readString(manifestFile, StandardCharsets.UTF_8) == manifest
+    }
+
+    def write(callGraphDir: Path, manifest: String): Unit = {
+        Files.writeString(callGraphDir.resolve(FileName), manifest, StandardCharsets.UTF_8)
+    }
+}
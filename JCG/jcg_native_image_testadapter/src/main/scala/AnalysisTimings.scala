@@ -0,0 +1,63 @@
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path}
+import scala.collection.mutable
+import play.api.libs.json.{JsObject, Json}
+
+/**
+ * Records the duration of the phases of one [[NativeImageJCGAdapter.serializeCG]] run, together
+ * with the resources used by the external processes started in a phase, and writes them as
+ * `timings.json`:
+ *
+ * {{{
+ * { "test" : "CFNE1", "totalNanos" : 123, "phases" : [
+ *     { "name" : "agent", "nanos" : 45, "cached" : false,
+ *       "process" : { "cpuNanos" : 67, "peakRssBytes" : 89, "processCount" : 2 } }, ... ] }
+ * }}}
+ */
+class AnalysisTimings(val test: String) {
+
+    private val startTime = System.nanoTime()
+    private val phases = mutable.ArrayBuffer.empty[JsObject]
+
+    /**
+     * Runs `body` as phase `name`. The phase is recorded even if `body` fails.
+     */
+    def time[T](name: String)(body: => T): T = {
+        val start = System.nanoTime()
+        try body
+        finally record(name, System.nanoTime() - start)
+    }
+
+    /**
+     * Runs `body`, which starts an external process, as phase `name`. If `body` returns `None`,
+     * the result was reused from a previous run and the phase is marked as `cached`.
+     */
+    def timeProcess(name: String)(body: => Option[ProcessStats]): Unit = {
+        val start = System.nanoTime()
+        var stats: Option[Option[ProcessStats]] = None
+        try stats = Some(body)
+        finally {
+            val phase = stats match {
+                case Some(Some(s)) => Json.obj("cached" -> false, "process" -> s.toJson)
+                case Some(None)    => Json.obj("cached" -> true)
+                case None          => Json.obj("failed" -> true)
+            }
+            record(name, System.nanoTime() - start, phase)
+        }
+    }
+
+    def toJson: JsObject = Json.obj(
+        "test" -> test,
+        "totalNanos" -> (System.nanoTime() - startTime),
+        "phases" -> phases.toSeq
+    )
+
+    def write(file: Path): Unit = {
+        Files.createDirectories(file.getParent)
+        Files.writeString(file, Json.prettyPrint(toJson), StandardCharsets.UTF_8)
+    }
+
+    private def record(name: String, nanos: Long, details: JsObject = Json.obj()): Unit = synchronized {
+        phases += Json.obj("name" -> name, "nanos" -> nanos) ++ details
+    }
+}
@@ -0,0 +1,212 @@
+import java.io.Reader
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+
+/**
+ * Streaming reader for the `call_tree_*.csv` files written by Native Image.
+ *
+ * The header is read once to resolve the column positions. Afterwards, every record is
+ * tokenized into a reused character buffer, so that int columns such as `Id`, `MethodId` or
+ * `TargetId` are parsed without creating intermediate strings. Quoting follows RFC 4180 and
+ * empty lines are skipped, like the `CSVFormat.DEFAULT` used before.
+ *
+ * @param in The reader to consume, closed by [[close]].
+ */
+final class CallTreeCsvReader(in: Reader) extends AutoCloseable {
+
+    private val input = new Array[Char](1 << 16)
+    private var inputPos = 0
+    private var inputLimit = 0
+
+    private var chars = new Array[Char](256)
+    private var length = 0
+    private var fieldStart = new Array[Int](16)
+    private var fieldEnd = new Array[Int](16)
+    private var fields = 0
+
+    /**
+     * The column names of the header record.
+     */
+    val header: Array[String] = {
+        if (!readRecord())
+            throw new IllegalArgumentException("call tree CSV file is empty")
+        Array.tabulate(fields)(string)
+    }
+
+    /**
+     * Returns the position of the column with the given name.
+     */
+    def column(name: String): Int = {
+        val index = header.indexOf(name)
+        if (index < 0)
+            throw new IllegalArgumentException(s"missing column $name in call tree CSV file")
+        index
+    }
+
+    /**
+     * Returns the position of the column with the given name, -1 if there is no such column.
+     */
+    def optionalColumn(name: String): Int = header.indexOf(name)
+
+    /**
+     * Advances to the next record, returns false if the end of the file has been reached.
+     */
+    def next(): Boolean = readRecord()
+
+    def string(column: Int): String = {
+        checkColumn(column)
+        new String(chars, fieldStart(column), fieldEnd(column) - fieldStart(column))
+    }
+
+    def int(column: Int): Int = {
+        checkColumn(column)
+        if (!isInt(column))
+            throw new NumberFormatException(s"""For input string: "${string(column)}"""")
+        parseInt(column)
+    }
+
+    /**
+     * Returns the int value of the given column or `default` if the column does not exist
+     * (`column` is -1) or does not contain a single int.
+     */
+    def intOrElse(column: Int, default: Int): Int = {
+        if (column < 0 || column >= fields || !isInt(column)) default
+        else parseInt(column)
+    }
+
+    override def close(): Unit = in.close()
+
+    private def checkColumn(column: Int): Unit = {
+        if (column < 0 || column >= fields)
+            throw new IllegalArgumentException(s"record has no column $column")
+    }
+
+    private def isInt(column: Int): Boolean = {
+        var i = fieldStart(column)
+        val end = fieldEnd(column)
+        if (i < end && chars(i) == '-') i += 1
+        if (i == end || end - i > 10) {
+            false
+        } else {
+            while (i < end && chars(i) >= '0' && chars(i) <= '9') i += 1
+            i == end && {
+                val value = parseLong(column)
+                value >= Int.MinValue && value <= Int.MaxValue
+            }
+        }
+    }
+
+    private def parseInt(column: Int): Int = parseLong(column).toInt
+
+    private def parseLong(column: Int): Long = {
+        var i = fieldStart(column)
+        val end = fieldEnd(column)
+        val negative = chars(i) == '-'
+        if (negative) i += 1
+        var value = 0L
+        while (i < end) {
+            value = value * 10 + (chars(i) - '0')
+            i += 1
+        }
+        if (negative) -value else value
+    }
+
+    private def read(): Int = {
+        if (inputPos == inputLimit) {
+            inputLimit = math.max(in.read(input), 0)
+            inputPos = 0
+        }
+        if (inputPos == inputLimit) {
+            -1
+        } else {
+            val c = input(inputPos)
+            inputPos += 1
+            c
+        }
+    }
+
+    private def append(c: Int): Unit = {
+        if (length == chars.length)
+            chars = java.util.Arrays.copyOf(chars, length * 2)
+        chars(length) = c.toChar
+        length += 1
+    }
+
+    private def endField(start: Int): Unit = {
+        if (fields == fieldStart.length) {
+            fieldStart = java.util.Arrays.copyOf(fieldStart, fields * 2)
+            fieldEnd = java.util.Arrays.copyOf(fieldEnd, fields * 2)
+        }
+        fieldStart(fields) = start
+        fieldEnd(fields) = length
+        fields += 1
+    }
+
+    /**
+     * Reads the next non-empty record into the buffer.
+     */
+    private def readRecord(): Boolean = {
+        var c = read()
+        while (c == '\n' || c == '\r') c = read()
+        if (c == -1) {
+            false
+        } else {
+            readFields(c)
+            true
+        }
+    }
+
+    /**
+     * Reads the fields of the record starting with the character `first` into the buffer.
+     */
+    private def readFields(first: Int): Unit = {
+        var c = first
+        length = 0
+        fields = 0
+        var start = 0
+        var quoted = false
+        var done = false
+        while (!done) {
+            if (quoted) {
+                if (c == -1)
+                    throw new IllegalArgumentException("unterminated quoted field in call tree CSV file")
+                if (c == '"') {
+                    c = read()
+                    if (c == '"') {
+                        append('"')
+                        c = read()
+                    } else {
+                        quoted = false
+                    }
+                } else {
+                    append(c)
+                    c = read()
+                }
+            } else {
+                c match {
+                    case '"' =>
+                        quoted = true
+                        c = read()
+                    case ',' =>
+                        endField(start)
+                        start = length
+                        c = read()
+                    case '\r' | '\n' | -1 =>
+                        endField(start)
+                        done = true
+                    case _ =>
+                        append(c)
+                        c = read()
+                }
+            }
+        }
+    }
+}
+
+object CallTreeCsvReader {
+
+    def open(file: Path): CallTreeCsvReader = {
+        new CallTreeCsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))
+    }
+}
@@ -34,4 +34,16 @@ object GraalPathResolver {
 
     (graalJava, nativeImage)
   }
+
+  /**
+   * Returns the version information of the GraalVM distribution, i.e., the contents of its
+   * `release` file, without starting a JVM. Falls back to the `GRAAL_HOME` path if the
+   * distribution has no such file.
+   */
+  def graalVersion(): String = {
+    val graalHome = sys.env.getOrElse("GRAAL_HOME", "")
+    val releaseFile = Paths.get(graalHome, "release")
+    if (Files.isRegularFile(releaseFile)) Files.readString(releaseFile)
+    else graalHome
+  }
 }
\ No newline at end of file
@@ -0,0 +1,218 @@
+import java.io.{BufferedReader, InputStreamReader}
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path, Paths}
+import java.util.concurrent.{ConcurrentHashMap, TimeUnit}
+import scala.collection.mutable
+import scala.concurrent.duration.Deadline
+import scala.jdk.CollectionConverters._
+import scala.util.{Try, Using}
+import play.api.libs.json.{JsObject, Json}
+
+/**
+ * Resources used by a process and all of its descendants.
+ *
+ * @param cpuNanos     User and system CPU time of all processes of the tree.
+ * @param peakRssBytes Peak resident set size, i.e., the largest sampled sum over all live processes
+ *                     or the high-water mark of a single process, whichever is larger.
+ * @param processCount Number of distinct processes observed in the tree.
+ */
+case class ProcessStats(cpuNanos: Long, peakRssBytes: Long, processCount: Int) {
+
+    def toJson: JsObject = Json.obj(
+        "cpuNanos" -> cpuNanos,
+        "peakRssBytes" -> peakRssBytes,
+        "processCount" -> processCount
+    )
+}
+
+/**
+ * Runs external commands while sampling the CPU time and memory of their process trees from
+ * `/proc`. On systems without `/proc`, the statistics are zero.
+ *
+ * Standard output and standard error are merged and streamed line by line into a log file;
+ * only the last [[TailLines]] lines are kept in memory for error reporting. A command that
+ * exceeds its deadline is killed together with all of its descendants, as are all commands
+ * that are still running when the JVM shuts down.
+ *
+ * Samples are taken every [[SampleIntervalMillis]] ms, hence, processes living shorter than that
+ * and CPU time spent after the last sample may be missed.
+ */
+object MonitoredProcess {
+
+    val SampleIntervalMillis = 50
+
+    val TailLines = 100
+
+    /**
+     * Result of a run.
+     *
+     * @param exitCode The exit code, meaningless if `timedOut`.
+     * @param timedOut Whether the process tree was killed because the deadline passed.
+     * @param tail     The last [[TailLines]] lines of output.
+     */
+    case class Result(exitCode: Int, timedOut: Boolean, tail: Seq[String], stats: ProcessStats) {
+
+        def succeeded: Boolean = !timedOut && exitCode == 0
+
+        /**
+         * Why the run did not succeed, followed by the tail of the output.
+         */
+        def failureDescription: String = {
+            val reason = if (timedOut) "Timed out" else s"Nonzero exit value: $exitCode"
+            (reason +: tail).mkString("\n")
+        }
+    }
+
+    private val running = ConcurrentHashMap.newKeySet[Process]()
+
+    private lazy val shutdownHook: Unit = Runtime.getRuntime.addShutdownHook(
+        new Thread(() => running.forEach(p => destroyTree(p.toHandle)), "monitored-process-cleanup")
+    )
+
+    private lazy val clockTicksPerSecond: Long =
+        Try(scala.sys.process.Process(Seq("getconf", "CLK_TCK")).!!.trim.toLong).getOrElse(100L)
+
+    /**
+     * Runs `command` in `workDirectory` and waits until it terminates or `deadline` has passed.
+     *
+     * @param logFile  Receives the output of the command; it is overwritten.
+     * @param deadline If given, the process tree is killed once the deadline has passed.
+     * @param onLine   Called with every line of output.
+     */
+    def run(
+        command:       Seq[String],
+        workDirectory: Path,
+        logFile:       Path,
+        deadline:      Option[Deadline] = None,
+        onLine:        String => Unit   = _ => ()
+    ): Result = {
+        shutdownHook
+        Files.createDirectories(logFile.toAbsolutePath.getParent)
+
+        val process = new ProcessBuilder(command.asJava)
+            .directory(workDirectory.toFile)
+            .redirectErrorStream(true)
+            .start()
+        running.add(process)
+        process.getOutputStream.close()
+
+        val sampler = new Sampler(process.toHandle)
+        val samplerThread = new Thread(() => sampler.run(), s"proc-sampler-${process.pid()}")
+        samplerThread.setDaemon(true)
+        samplerThread.start()
+
+        val tail = mutable.Queue.empty[String]
+        val pump = new Thread(() => {
+            // keeps draining the output even if the log cannot be written, so the process never blocks
+            val log = Try(Files.newBufferedWriter(logFile, StandardCharsets.UTF_8)).toOption
+            Try {
+                Using.resource(new BufferedReader(new InputStreamReader(process.getInputStream, StandardCharsets.UTF_8))) { in =>
+                    var line = in.readLine()
+                    while (line != null) {
+                        log.foreach(w => Try { w.write(line); w.newLine(); w.flush() })
+                        tail.synchronized {
+                            tail.enqueue(line)
+                            if (tail.size > TailLines) tail.dequeue()
+                        }
+                        Try(onLine(line))
+                        line = in.readLine()
+                    }
+                }
+            }
+            log.foreach(w => Try(w.close()))
+        }, s"proc-output-${process.pid()}")
+        pump.setDaemon(true)
+        pump.start()
+
+        var timedOut = false
+        try {
+            val exited = deadline match {
+                case Some(d) => process.waitFor(math.max(0L, d.timeLeft.toMillis), TimeUnit.MILLISECONDS)
+                case None    => process.waitFor(); true
+            }
+            if (!exited) {
+                timedOut = true
+                destroyTree(process.toHandle)
+                process.waitFor()
+            }
+            // descendants may keep the output open after the process itself has exited
+            pump.join(TimeUnit.SECONDS.toMillis(5))
+        } catch {
+            case e: InterruptedException =>
+                destroyTree(process.toHandle)
+                throw e
+        } finally {
+            running.remove(process)
+            sampler.stop()
+            samplerThread.join()
+        }
+
+        Result(process.exitValue(), timedOut, tail.synchronized(tail.toList), sampler.stats)
+    }
+
+    /**
+     * Forcibly terminates the process and all of its descendants, children first.
+     */
+    def destroyTree(root: ProcessHandle): Unit = {
+        root.descendants().iterator().asScala.toList.reverse.foreach(_.destroyForcibly())
+        root.destroyForcibly()
+    }
+
+    private class Sampler(root: ProcessHandle) {
+        @volatile private var running = true
+        private val cpuTicks = mutable.Map.empty[Long, Long]
+        private var peakRssKiB = 0L
+
+        def stop(): Unit = running = false
+
+        def run(): Unit = {
+            while (running) {
+                sample()
+                Thread.sleep(SampleIntervalMillis)
+            }
+        }
+
+        def stats: ProcessStats = synchronized {
+            ProcessStats(
+                cpuTicks.values.sum * 1000000000L / clockTicksPerSecond,
+                peakRssKiB * 1024,
+                cpuTicks.size
+            )
+        }
+
+        private def sample(): Unit = synchronized {
+            val pids = root.pid() +: root.descendants().iterator().asScala.map(_.pid()).toSeq
+            var rssKiB = 0L
+            for (pid <- pids) {
+                readCpuTicks(pid).foreach { ticks =>
+                    cpuTicks(pid) = math.max(cpuTicks.getOrElse(pid, 0L), ticks)
+                }
+                val status = readStatus(pid)
+                rssKiB += status.getOrElse("VmRSS", 0L)
+                peakRssKiB = math.max(peakRssKiB, status.getOrElse("VmHWM", 0L))
+            }
+            peakRssKiB = math.max(peakRssKiB, rssKiB)
+        }
+
+        /**
+         * utime + stime of `/proc/<pid>/stat`; the command name may contain spaces, hence, the
+         * fields are counted from the closing parenthesis.
+         */
+        private def readCpuTicks(pid: Long): Option[Long] = Try {
+            val stat = Files.readString(Paths.get(s"/proc/$pid/stat"))
+            val fields = stat.substring(stat.lastIndexOf(')') + 2).split(' ')
+            fields(11).toLong + fields(12).toLong
+        }.toOption
+
+        /**
+         * The `kB` values of `/proc/<pid>/status`.
+         */
+        private def readStatus(pid: Long): Map[String, Long] = Try {
+            Files.readAllLines(Paths.get(s"/proc/$pid/status")).asScala.iterator.collect {
+                case line if line.endsWith(" kB") =>
+                    val colon = line.indexOf(':')
+                    line.substring(0, colon) -> line.substring(colon + 1, line.length - 3).trim.toLong
+            }.toMap
+        }.getOrElse(Map.empty)
+    }
+}
@@ -0,0 +1,281 @@
+import scala.collection.mutable
+
+/**
+ * Int-indexed view of the call tree reported by Native Image in `call_tree_methods.csv`,
+ * `call_tree_invokes.csv` and `call_tree_targets.csv`.
+ *
+ * The tables are stored in compressed sparse row (CSR) form: the invokes of method `m` are
+ * `invokeStart(m) until invokeStart(m + 1)` and the targets of invoke `i` are
+ * `targetStart(i) until targetStart(i + 1)`. All references are dense indexes into the
+ * method table, not the ids used in the CSV files.
+ */
+final class NativeImageCallTree private (
+        val methodNames:           Array[String],
+        val methodDeclaringClass:  Array[String],
+        val methodParameterTypes:  Array[String],
+        val methodReturnTypes:     Array[String],
+        val invokeStart:           Array[Int],
+        val invokeDeclaredTarget:  Array[Int],
+        val invokeLine:            Array[Int],
+        val targetStart:           Array[Int],
+        val targetMethod:          Array[Int]
+) {
+
+    def methodCount: Int = methodNames.length
+
+    def invokeCount: Int = invokeLine.length
+
+    def targetCount: Int = targetMethod.length
+
+    /**
+     * Converts the index into the unified [[ReachableMethods]] data model.
+     *
+     * Every method signature is converted once and shared by all call sites referring to it.
+     * Invokes without an entry in `call_tree_targets.csv` are resolved to their declared target.
+     */
+    def toReachableMethods: ReachableMethods = {
+        val signatures = new Array[Method](methodCount)
+        var m = 0
+        while (m < methodCount) {
+            signatures(m) = Method(
+                name = methodNames(m),
+                declaringClass = NativeImageJCGAdapter.toJvmTypeDescriptor(methodDeclaringClass(m)),
+                returnType = NativeImageJCGAdapter.toJvmTypeDescriptor(methodReturnTypes(m)),
+                parameterTypes = NativeImageJCGAdapter.parseParameterTypes(methodParameterTypes(m))
+            )
+            m += 1
+        }
+
+        val reachableMethods = Set.newBuilder[ReachableMethod]
+        m = 0
+        while (m < methodCount) {
+            val callSites = Set.newBuilder[CallSite]
+            var i = invokeStart(m)
+            while (i < invokeStart(m + 1)) {
+                val declaredTarget = signatures(invokeDeclaredTarget(i))
+                val targets =
+                    if (targetStart(i) == targetStart(i + 1)) {
+                        Set(declaredTarget)
+                    } else {
+                        val builder = Set.newBuilder[Method]
+                        var t = targetStart(i)
+                        while (t < targetStart(i + 1)) {
+                            builder += signatures(targetMethod(t))
+                            t += 1
+                        }
+                        builder.result()
+                    }
+
+                callSites += CallSite(declaredTarget, invokeLine(i), None, targets)
+                i += 1
+            }
+
+            reachableMethods += ReachableMethod(signatures(m), callSites.result())
+            m += 1
+        }
+
+        ReachableMethods(reachableMethods.result())
+    }
+}
+
+object NativeImageCallTree {
+
+    /**
+     * Builds the index from the parsed CSV tables.
+     */
+    def apply(
+        methods:     Iterable[NativeImageMethod],
+        invocations: Iterable[NativeImageInvocation],
+        targets:     Iterable[NativeImageTarget]
+    ): NativeImageCallTree = {
+        val builder = new Builder
+        methods.foreach { m =>
+            builder.addMethod(m.id, m.name, m.declaringClass, m.parameterTypes, m.returnType)
+        }
+        invocations.foreach { i =>
+            builder.addInvoke(i.id, i.methodId, i.targetId, i.lineNumber)
+        }
+        targets.foreach { t =>
+            builder.addTarget(t.invokeId, t.targetId)
+        }
+        builder.result()
+    }
+
+    /**
+     * Collects the rows of the three call tree tables in any order and turns them into a
+     * [[NativeImageCallTree]] using counting sorts, i.e., in time linear in the number of rows.
+     *
+     * Invokes of unknown methods and targets of unknown invokes are dropped, whereas a reference
+     * to an unknown target method is reported as an [[IllegalArgumentException]].
+     */
+    final class Builder {
+        private val methodIds = mutable.ArrayBuilder.make[Int]
+        private val names = mutable.ArrayBuilder.make[String]
+        private val declaringClasses = mutable.ArrayBuilder.make[String]
+        private val parameterTypes = mutable.ArrayBuilder.make[String]
+        private val returnTypes = mutable.ArrayBuilder.make[String]
+
+        private val invokeIds = mutable.ArrayBuilder.make[Int]
+        private val invokeCallers = mutable.ArrayBuilder.make[Int]
+        private val invokeTargets = mutable.ArrayBuilder.make[Int]
+        private val invokeLines = mutable.ArrayBuilder.make[Int]
+
+        private val targetInvokes = mutable.ArrayBuilder.make[Int]
+        private val targetMethods = mutable.ArrayBuilder.make[Int]
+
+        def addMethod(
+            id:             Int,
+            name:           String,
+            declaringClass: String,
+            parameterTypes: String,
+            returnType:     String
+        ): Unit = {
+            methodIds += id
+            names += name
+            declaringClasses += declaringClass
+            this.parameterTypes += parameterTypes
+            returnTypes += returnType
+        }
+
+        def addInvoke(id: Int, methodId: Int, targetId: Int, line: Int): Unit = {
+            invokeIds += id
+            invokeCallers += methodId
+            invokeTargets += targetId
+            invokeLines += line
+        }
+
+        def addTarget(invokeId: Int, targetId: Int): Unit = {
+            targetInvokes += invokeId
+            targetMethods += targetId
+        }
+
+        def result(): NativeImageCallTree = {
+            val methodIndex = new IdIndex(methodIds.result())
+            val methodCount = methodIndex.size
+
+            // resolve the invoke columns and sort them by calling method
+            val rawIds = invokeIds.result()
+            val rawCallers = invokeCallers.result()
+            val rawTargets = invokeTargets.result()
+            val rawLines = invokeLines.result()
+
+            val invokeStart = new Array[Int](methodCount + 1)
+            val callers = new Array[Int](rawIds.length)
+            var i = 0
+            while (i < rawIds.length) {
+                val caller = methodIndex(rawCallers(i))
+                callers(i) = caller
+                if (caller >= 0)
+                    invokeStart(caller + 1) += 1
+                i += 1
+            }
+            prefixSum(invokeStart)
+
+            val invokeCount = invokeStart(methodCount)
+            val declaredTargets = new Array[Int](invokeCount)
+            val lines = new Array[Int](invokeCount)
+            // position of the i-th invoke row in the sorted tables, -1 if it has been dropped
+            val position = new Array[Int](rawIds.length)
+            val nextInvoke = invokeStart.clone()
+            i = 0
+            while (i < rawIds.length) {
+                val caller = callers(i)
+                if (caller >= 0) {
+                    val p = nextInvoke(caller)
+                    nextInvoke(caller) += 1
+                    declaredTargets(p) = resolveTarget(methodIndex, rawTargets(i))
+                    lines(p) = rawLines(i)
+                    position(i) = p
+                } else {
+                    position(i) = -1
+                }
+                i += 1
+            }
+
+            // resolve the target columns and sort them by invoke
+            val invokeIndex = new IdIndex(rawIds)
+            val rawTargetInvokes = targetInvokes.result()
+            val rawTargetMethods = targetMethods.result()
+
+            val targetStart = new Array[Int](invokeCount + 1)
+            val targetPositions = new Array[Int](rawTargetInvokes.length)
+            var t = 0
+            while (t < rawTargetInvokes.length) {
+                val row = invokeIndex(rawTargetInvokes(t))
+                val p = if (row >= 0) position(row) else -1
+                targetPositions(t) = p
+                if (p >= 0)
+                    targetStart(p + 1) += 1
+                t += 1
+            }
+            prefixSum(targetStart)
+
+            val targets = new Array[Int](targetStart(invokeCount))
+            val nextTarget = targetStart.clone()
+            t = 0
+            while (t < rawTargetInvokes.length) {
+                val p = targetPositions(t)
+                if (p >= 0) {
+                    targets(nextTarget(p)) = resolveTarget(methodIndex, rawTargetMethods(t))
+                    nextTarget(p) += 1
+                }
+                t += 1
+            }
+
+            new NativeImageCallTree(
+                names.result(),
+                declaringClasses.result(),
+                parameterTypes.result(),
+                returnTypes.result(),
+                invokeStart,
+                declaredTargets,
+                lines,
+                targetStart,
+                targets
+            )
+        }
+
+        private def resolveTarget(methodIndex: IdIndex, targetId: Int): Int = {
+            val target = methodIndex(targetId)
+            if (target < 0)
+                throw new IllegalArgumentException(s"unknown target method id $targetId")
+            target
+        }
+
+        private def prefixSum(counts: Array[Int]): Unit = {
+            var k = 1
+            while (k < counts.length) {
+                counts(k) += counts(k - 1)
+                k += 1
+            }
+        }
+    }
+
+    /**
+     * Maps the (non-negative) ids used in the CSV files to their row index, -1 if unknown.
+     * Native Image assigns ids consecutively, hence, a plain array is used as lookup table.
+     */
+    private final class IdIndex(ids: Array[Int]) {
+        private val rows: Array[Int] = {
+            var max = -1
+            var k = 0
+            while (k < ids.length) {
+                if (ids(k) < 0)
+                    throw new IllegalArgumentException(s"negative id ${ids(k)} in call tree")
+                if (ids(k) > max) max = ids(k)
+                k += 1
+            }
+            val rows = Array.fill(max + 1)(-1)
+            k = 0
+            while (k < ids.length) {
+                rows(ids(k)) = k
+                k += 1
+            }
+            rows
+        }
+
+        def size: Int = ids.length
+
+        def apply(id: Int): Int = if (id >= 0 && id < rows.length) rows(id) else -1
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Measures how building a [[NativeImageCallTree]] and converting it into [[ReachableMethods]]
+ * scales with the size of the call tree.
+ *
+ * Synthetic call trees with four invokes per method and up to two targets per invoke are used.
+ * For linear scaling, the reported nanoseconds per invoke should stay roughly constant.
+ *
+ * Usage: `runMain NativeImageCallTreeBenchmark [invokeCount ...]`
+ * (defaults to 250k, 500k, 1M and 2M invokes).
+ */
+object NativeImageCallTreeBenchmark {
+
+    private val Warmups = 2
+
+    def main(args: Array[String]): Unit = {
+        val sizes =
+            if (args.nonEmpty) args.map(_.toInt).toSeq
+            else Seq(250000, 500000, 1000000, 2000000)
+
+        for (_ <- 0 until Warmups) {
+            run(sizes.head, report = false)
+        }
+        sizes.foreach(run(_, report = true))
+    }
+
+    private def run(invokeCount: Int, report: Boolean): Unit = {
+        System.gc()
+        val start = System.nanoTime()
+        val callTree = syntheticCallTree(invokeCount)
+        val indexed = System.nanoTime()
+        val reachableMethods = callTree.toReachableMethods
+        val converted = System.nanoTime()
+
+        if (report) {
+            val buildMs = (indexed - start) / 1000000d
+            val convertMs = (converted - indexed) / 1000000d
+            val nsPerInvoke = (converted - start).toDouble / invokeCount
+            println(
+                f"$invokeCount%,10d invokes, ${callTree.targetCount}%,10d targets: " +
+                    f"index $buildMs%8.1f ms, conversion $convertMs%8.1f ms, " +
+                    f"$nsPerInvoke%6.1f ns/invoke (${reachableMethods.reachableMethods.size}%,d methods)"
+            )
+        }
+    }
+
+    private def syntheticCallTree(invokeCount: Int): NativeImageCallTree = {
+        val methodCount = math.max(1, invokeCount / 4)
+        val builder = new NativeImageCallTree.Builder
+
+        var m = 0
+        while (m < methodCount) {
+            builder.addMethod(m, s"m$m", s"bench.C${m % 1000}", "int java.lang.String", "void")
+            m += 1
+        }
+
+        var i = 0
+        var nextTarget = 0
+        while (i < invokeCount) {
+            // spread the invokes of a method over the whole table, like Native Image does
+            val caller = ((i.toLong * 7919) % methodCount).toInt
+            val declared = ((i.toLong * 31 + 1) % methodCount).toInt
+            builder.addInvoke(i, caller, declared, i % 100)
+            for (_ <- 0 until i % 3) {
+                builder.addTarget(i, nextTarget % methodCount)
+                nextTarget += 1
+            }
+            i += 1
+        }
+
+        builder.result()
+    }
+}
@@ -0,0 +1,128 @@
+import java.io.PrintWriter
+import java.lang.management.ManagementFactory
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import scala.jdk.CollectionConverters._
+import scala.util.Using
+
+import org.apache.commons.csv.CSVFormat
+import org.apache.commons.csv.CSVParser
+import org.apache.commons.io.FileUtils
+
+/**
+ * Compares parse time and peak heap usage of [[NativeImageJCGAdapter.loadCallTree]] with the
+ * previous ingestion, which materialized every CSV row as `Map[String, String]` and then as
+ * case class before building the index.
+ *
+ * Usage: `runMain NativeImageCsvBenchmark [invokeCount] [callTreeDir]`
+ * If no directory with `call_tree_*.csv` files is given, synthetic files are generated.
+ */
+object NativeImageCsvBenchmark {
+
+    def main(args: Array[String]): Unit = {
+        val invokeCount = if (args.nonEmpty) args(0).toInt else 1000000
+        val generated = args.length < 2
+        val dir = if (generated) writeSyntheticCallTree(invokeCount) else Paths.get(args(1))
+
+        try {
+            // warm up both implementations
+            legacyLoad(dir)
+            NativeImageJCGAdapter.loadCallTree(dir.toString)
+
+            measure("List[Map[String,String]]")(legacyLoad(dir))
+            measure("streaming reader       ")(NativeImageJCGAdapter.loadCallTree(dir.toString))
+        } finally {
+            if (generated) FileUtils.deleteDirectory(dir.toFile)
+        }
+    }
+
+    private def measure(name: String)(load: => NativeImageCallTree): Unit = {
+        val heapPools = ManagementFactory.getMemoryPoolMXBeans.asScala.filter(_.getType.name == "HEAP")
+        System.gc()
+        val baseline = heapPools.map(_.getUsage.getUsed).sum
+        heapPools.foreach(_.resetPeakUsage())
+
+        val start = System.nanoTime()
+        val callTree = load
+        val elapsed = (System.nanoTime() - start) / 1000000d
+
+        val peak = heapPools.map(_.getPeakUsage.getUsed).sum - baseline
+        println(
+            f"$name: ${callTree.invokeCount}%,d invokes parsed in $elapsed%8.1f ms, " +
+                f"peak heap +${peak / (1024d * 1024d)}%,.1f MiB"
+        )
+    }
+
+    private def legacyLoad(dir: Path): NativeImageCallTree = {
+        def readCsv(file: String): List[Map[String, String]] = {
+            Using.resource(new CSVParser(
+                Files.newBufferedReader(dir.resolve(file)), CSVFormat.DEFAULT.withFirstRecordAsHeader()
+            )) { csvParser =>
+                csvParser.asScala.map(_.toMap.asScala.toMap).toList
+            }
+        }
+
+        val methods = readCsv("call_tree_methods.csv").map { row =>
+            NativeImageMethod(
+                id = row("Id").toInt,
+                name = row("Name"),
+                declaringClass = row("Type"),
+                parameterTypes = row("Parameters"),
+                returnType = row("Return"),
+                display = row("Display"),
+                flags = row("Flags"),
+                isEntryPoint = row("IsEntryPoint").toBoolean
+            )
+        }
+        val invocations = readCsv("call_tree_invokes.csv").map { row =>
+            NativeImageInvocation(
+                id = row("Id").toInt,
+                methodId = row("MethodId").toInt,
+                bytecodeIndexes = row("BytecodeIndexes"),
+                targetId = row("TargetId").toInt,
+                isDirect = row("IsDirect").toBoolean,
+                lineNumber = row.get("LineNumbers").flatMap(s => s.toIntOption).getOrElse(-1)
+            )
+        }
+        val targets = readCsv("call_tree_targets.csv").map { row =>
+            NativeImageTarget(invokeId = row("InvokeId").toInt, targetId = row("TargetId").toInt)
+        }
+
+        NativeImageCallTree(methods, invocations, targets)
+    }
+
+    private def writeSyntheticCallTree(invokeCount: Int): Path = {
+        val dir = Files.createTempDirectory("call-tree-bench")
+        val methodCount = math.max(1, invokeCount / 4)
+
+        Using.resource(new PrintWriter(Files.newBufferedWriter(dir.resolve("call_tree_methods.csv")))) { out =>
+            out.println("Id,Name,Type,Parameters,Return,Display,Flags,IsEntryPoint")
+            for (m <- 0 until methodCount) {
+                out.println(
+                    s"""$m,m$m,bench.C${m % 1000},int java.lang.String,void,"C${m % 1000}.m$m(int, String)",,${m == 0}"""
+                )
+            }
+        }
+
+        Using.resource(new PrintWriter(Files.newBufferedWriter(dir.resolve("call_tree_invokes.csv")))) { out =>
+            out.println("Id,MethodId,BytecodeIndexes,TargetId,IsDirect,LineNumbers")
+            for (i <- 0 until invokeCount) {
+                val caller = ((i.toLong * 7919) % methodCount).toInt
+                val declared = ((i.toLong * 31 + 1) % methodCount).toInt
+                out.println(s"$i,$caller,${i % 50},$declared,${i % 3 == 0},${i % 100}")
+            }
+        }
+
+        Using.resource(new PrintWriter(Files.newBufferedWriter(dir.resolve("call_tree_targets.csv")))) { out =>
+            out.println("InvokeId,TargetId")
+            var nextTarget = 0
+            for (i <- 0 until invokeCount; _ <- 0 until i % 3) {
+                out.println(s"$i,${nextTarget % methodCount}")
+                nextTarget += 1
+            }
+        }
+
+        dir
+    }
+}
@@ -1,11 +1,10 @@
 import org.apache.commons.io.FileUtils
-import java.io.{File, PrintWriter, Writer}
+import java.io.{BufferedWriter, File, IOException, PrintWriter, Writer}
+import java.lang.management.ManagementFactory
 import java.nio.file.{Files, Path, Paths, StandardCopyOption}
-import scala.sys.process._
-import scala.util.{Failure, Success, Try}
-import play.api.libs.json.{Format, Json}
-import org.apache.commons.csv.{CSVFormat, CSVParser}
-import scala.jdk.CollectionConverters._
+import java.util.concurrent.{Semaphore, TimeoutException}
+import scala.concurrent.duration._
+import scala.util.Using
 
 /**
  * A [[JavaTestAdapter]] for the Native Image-based call graph generation.
@@ -21,87 +20,309 @@ import scala.jdk.CollectionConverters._
  *
  * @author Jan Křůmal
  */
-object NativeImageJCGAdapter extends JavaTestAdapter {
+object NativeImageJCGAdapter extends JavaTestAdapter with PipelinedTestAdapter {
 
     val frameworkName: String = "NativeImage"
 
     val possibleAlgorithms: Array[String] = Array("PTA") // points-to
 
+    override def frameworkVersion: String =
+        new ContentHash().update(TestAdapter.codeVersion(getClass)).update(GraalPathResolver.graalVersion()).hex
+
+    /**
+     * Physical memory assumed to be needed by a single native-image analysis of a test case.
+     */
+    val MemoryPerRun: Long = 8L << 30
+
+    /**
+     * Maximum number of agent and native-image runs executed at the same time when the adapter
+     * is used concurrently; set by `JCG_NATIVE_IMAGE_JOBS`. By default, one run per core as long
+     * as every run has [[MemoryPerRun]] of physical memory, but at least one; hence, runs only
+     * overlap on machines with more than twice that memory.
+     */
+    val maxParallelRuns: Int = sys.env.get("JCG_NATIVE_IMAGE_JOBS").flatMap(_.toIntOption).filter(_ > 0)
+      .getOrElse(defaultParallelRuns)
+
+    private def defaultParallelRuns: Int = {
+        val memory = ManagementFactory.getOperatingSystemMXBean match {
+            case os: com.sun.management.OperatingSystemMXBean => os.getTotalPhysicalMemorySize
+            case _                                             => 0L
+        }
+        val cores = Runtime.getRuntime.availableProcessors()
+        math.max(1, math.min(cores.toLong, memory / MemoryPerRun).toInt)
+    }
+
+    private val runSlots = new Semaphore(maxParallelRuns, true)
+
+    /**
+     * The stages of a run, see [[PipelinedTestAdapter]].
+     */
+    val stages: Seq[String] = Seq("agent", "nativeImage", "serialize")
+
     def serializeCG(
                      algorithm:      String,
                      inputDirPath:   String,
                      output:         Writer,
                      adapterOptions: AdapterOptions
                    ): Long = {
-        val startTime = System.nanoTime()
+        val run = startRun(algorithm, inputDirPath, output, adapterOptions)
+        var elapsed = 0L
+        try {
+            try {
+                stages.indices.foreach(run.runStage)
+            } finally {
+                elapsed = run.finish()
+            }
+        } catch {
+            case e: InterruptedException =>
+                // the caller, e.g., the timeout of the evaluation, must still see the interrupt
+                println(s"[error] Run for $inputDirPath was interrupted")
+                Thread.currentThread().interrupt()
+                throw e
+            case e: TimeoutException =>
+                println(s"[error] ${e.getMessage}")
+                throw e
+            case e: Exception =>
+                println(s"[error] Unexpected error: ${e.getClass.getName} - ${e.getMessage}")
+                e.printStackTrace()
+                throw e
+        }
+        elapsed
+    }
+
+    def startRun(
+                  algorithm:      String,
+                  inputDirPath:   String,
+                  output:         Writer,
+                  adapterOptions: AdapterOptions
+                ): PipelinedRun = {
+        new Run(inputDirPath, output, adapterOptions)
+    }
 
-        // Get bin paths of Graal and Native Image
-        val (graalJavaPath, nativeImagePath) = GraalPathResolver.resolveGraalPaths()
+    /**
+     * Runs the stages for one test case: `agent` generates the reachability metadata,
+     * `nativeImage` generates the call tree CSVs and `serialize` converts them to JSON.
+     *
+     * The wall-clock budget given by the `timeout` option is only consumed while a stage is
+     * running, not while the run waits for the next stage. Each external process additionally
+     * needs one of the [[maxParallelRuns]] slots.
+     */
+    private class Run(inputDirPath: String, output: Writer, adapterOptions: AdapterOptions) extends PipelinedRun {
 
         // Directory for native image reachability metadata
-        val configDirectory = Paths.get("./config")
+        private val configDirectory = Paths.get("./config").toAbsolutePath.normalize
         // Current testcase
-        val jarPath = Paths.get(inputDirPath)
-        val jarFileName = jarPath.getFileName.toString
-        val configOutputDir = configDirectory.resolve(jarFileName.stripSuffix(".jar"))
+        private val jarPath = Paths.get(inputDirPath).toAbsolutePath
+        private val jarFileName = jarPath.getFileName.toString
+        private val testName = jarFileName.stripSuffix(".jar")
+        private val configOutputDir = configDirectory.resolve(testName)
+        private val logDirectory = reportDirectory(testName, adapterOptions)
+
+        // Remaining wall-clock budget, processes still running when it is exceeded are killed
+        private var remaining: Option[FiniteDuration] =
+            Some(adapterOptions.getInt("timeout", -1)).filter(_ >= 0).map(_.seconds)
+
+        private val timings = new AnalysisTimings(testName)
+        private var elapsed = 0L
+
+        // Private working directory, so that concurrent runs do not share ./reports
+        private var workDirectory: Option[Path] = None
+
+        def runStage(stage: Int): Unit = {
+            val start = System.nanoTime()
+            try {
+                stages(stage) match {
+                    case "agent" =>
+                        // Create configuration files that could be necessary for reflection etc
+                        val graalJavaPath = GraalPathResolver.resolveGraalPaths()._1
+                        withRunSlot("agent") {
+                            createConfig(jarPath, configOutputDir, graalJavaPath, work(), logDirectory, deadline())
+                        }
+
+                    case "nativeImage" =>
+                        // Generate CSV call graph for current test case
+                        val nativeImagePath = GraalPathResolver.resolveGraalPaths()._2
+                        withRunSlot("nativeImage") {
+                            generateCallGraph(jarPath, configOutputDir, nativeImagePath, work(), logDirectory, deadline())
+                        }
+                        publishAnalysisStats(testName, adapterOptions)
+
+                    case "serialize" =>
+                        // Serialization, streamed to the evaluation
+                        serializeCallGraph(jarFileName, output, timings)
+                        println("[info] CG Serialized")
+                }
+            } finally {
+                val duration = System.nanoTime() - start
+                elapsed += duration
+                remaining = remaining.map(_ - duration.nanos)
+            }
+        }
 
-        try {
-            // Create configuration files that could be necessary for reflection etc
-            createConfig(jarPath, configOutputDir, graalJavaPath)
+        def finish(): Long = {
+            try {
+                output.close()
+                workDirectory.foreach(dir => FileUtils.deleteDirectory(dir.toFile))
+            } finally {
+                writeTimings(timings, adapterOptions)
+            }
+            elapsed
+        }
+
+        private def work(): Path = {
+            if (workDirectory.isEmpty)
+                workDirectory = Some(createWorkDirectory(testName))
+            workDirectory.get
+        }
 
-            // Generate CSV call graph for current test case
-            generateCallGraph(jarPath, configDirectory, nativeImagePath)
+        private def deadline(): Option[Deadline] = remaining.map(_.fromNow)
 
-            // Serialization
-            val json = serializeCallGraph(jarFileName)
-            println("[info] CG Serialized")
+        private def withRunSlot(phase: String)(body: => Option[ProcessStats]): Unit = {
+            timings.time(s"${phase}Queued")(runSlots.acquire())
+            try timings.timeProcess(phase)(body)
+            finally runSlots.release()
+        }
+    }
+
+    /**
+     * Directory for per-test reports: the `outputDir` adapter option, i.e., the directory of the
+     * serialized call graph, or `./CallGraphs/<test>` if the option is not set.
+     */
+    def reportDirectory(testName: String, adapterOptions: AdapterOptions): Path = {
+        Option(adapterOptions.getString("outputDir")).filter(_.nonEmpty)
+            .map(Paths.get(_))
+            .getOrElse(Paths.get("./CallGraphs", testName))
+    }
 
-            // Pass serialized CG to evaluation
-            output.write(json)
+    /**
+     * Writes `timings.json` to the [[reportDirectory]].
+     */
+    def writeTimings(timings: AnalysisTimings, adapterOptions: AdapterOptions): Unit = {
+        try {
+            timings.write(reportDirectory(timings.test, adapterOptions).resolve("timings.json"))
         } catch {
-            case e: Exception =>
-                println(s"[error] Unexpected error: ${e.getClass.getName} - ${e.getMessage}")
-                e.printStackTrace()
-        } finally {
-            output.close()
+            case e: IOException =>
+                println(s"[warn] Could not write timings for ${timings.test}: ${e.getMessage}")
         }
+    }
 
-        System.nanoTime() - startTime
+    /**
+     * Copies the [[NativeImageStats]] stored with the call tree to the [[reportDirectory]]. The
+     * statistics are kept with the call tree, so that they are also available if the call tree
+     * was reused in incremental mode.
+     */
+    def publishAnalysisStats(testName: String, adapterOptions: AdapterOptions): Unit = {
+        val stats = Paths.get("./CallGraphs", testName, NativeImageStats.FileName)
+        val target = reportDirectory(testName, adapterOptions).resolve(NativeImageStats.FileName)
+        if (Files.isRegularFile(stats) && stats.toAbsolutePath.normalize != target.toAbsolutePath.normalize) {
+            Files.createDirectories(target.getParent)
+            Files.copy(stats, target, StandardCopyOption.REPLACE_EXISTING)
+        }
     }
 
+    /**
+     * Creates a fresh working directory for one run below `./work`.
+     *
+     * @param testName Name of the current test case, used as prefix.
+     */
+    def createWorkDirectory(testName: String): Path = {
+        val workRoot = Paths.get("./work").toAbsolutePath.normalize
+        Files.createDirectories(workRoot)
+        Files.createTempDirectory(workRoot, s"$testName-")
+    }
+
+    /**
+     * Options passed to the native-image-agent in addition to the output directory.
+     */
+    val agentOptions: Seq[String] = Seq.empty
+
     /**
      * Generates configuration files using the native-image-agent to their respective folder.
      *
+     * The generated metadata is cached by [[AgentConfigCache]]; on a cache hit it is restored
+     * without running the agent.
+     *
      * @param jarFile           The path to the JAR file.
      * @param configOutputDir   The directory to store the configuration files.
      * @param graalJavaPath     The path to Native Image executable.
+     * @param workDirectory     The working directory of the test program.
+     * @param logDirectory      The directory `agent.log` is written to.
+     * @param deadline          If given, the agent run is killed once it has passed.
+     * @return The resources used by the agent run, `None` if the metadata was restored from the cache.
      */
-    def createConfig(jarFile: Path, configOutputDir: Path, graalJavaPath: Path): Unit = {
+    def createConfig(
+        jarFile:         Path,
+        configOutputDir: Path,
+        graalJavaPath:   Path,
+        workDirectory:   Path,
+        logDirectory:    Path,
+        deadline:        Option[Deadline] = None
+    ): Option[ProcessStats] = {
+        val cacheKey =
+            if (AgentConfigCache.enabled)
+                Some(AgentConfigCache.key(jarFile, GraalPathResolver.graalVersion(), agentOptions))
+            else None
+
+        if (cacheKey.exists(AgentConfigCache.restore(_, configOutputDir))) {
+            println(s"[info] Agent cache hit for ${jarFile.getFileName} (${cacheKey.get}), restored $configOutputDir")
+            return None;
+        }
+        cacheKey.foreach(key => println(s"[info] Agent cache miss for ${jarFile.getFileName} ($key)"))
+
         println(s"[info] Creating directory ${configOutputDir.toString}")
         Files.createDirectories(configOutputDir)
         val agentCommand = Seq(
             graalJavaPath.toString,
-            s"-agentlib:native-image-agent=config-output-dir=${configOutputDir.toString}",
+            (s"-agentlib:native-image-agent=config-output-dir=${configOutputDir.toString}" +: agentOptions).mkString(","),
             "-jar",
             jarFile.toString
         )
 
-        println(s"[info] Running agent command: ${agentCommand.mkString(" ")}")
-        val agentResult = Try(agentCommand.!!)
-        agentResult match {
-            case Success(_) => println(s"[info] Configuration generated for ${jarFile.getFileName}")
-            case Failure(e) => println(s"[error] Failed to generate configuration for ${jarFile.getFileName}: ${e.getMessage}")
+        val logFile = logDirectory.resolve("agent.log")
+        println(s"[info] Running agent command: ${agentCommand.mkString(" ")} (log: $logFile)")
+        val agentResult = MonitoredProcess.run(agentCommand, workDirectory, logFile, deadline)
+        if (agentResult.timedOut) {
+            throw new TimeoutException(s"Agent run for ${jarFile.getFileName} timed out (log: $logFile)")
+        } else if (agentResult.succeeded) {
+            println(s"[info] Configuration generated for ${jarFile.getFileName}")
+            cacheKey.foreach(AgentConfigCache.store(_, configOutputDir))
+        } else {
+            // the test program itself may fail, the metadata collected so far is still used
+            println(
+                s"[error] Failed to generate configuration for ${jarFile.getFileName} (log: $logFile): " +
+                    agentResult.failureDescription
+            )
         }
+        Some(agentResult.stats)
     }
 
     /**
      * Generates the call graph using the native-image tool.
      *
+     * native-image runs in `workDirectory`, hence, it writes its reports to
+     * `workDirectory/reports`, which are then moved to `./CallGraphs/<test>`.
+     *
+     * In incremental mode, the analysis is skipped if the [[AnalysisManifest]] stored with the
+     * call tree of the previous run matches the current inputs.
+     *
      * @param jarFile         The path to the JAR file.
-     * @param configOutputDir The directory containing the configuration files.
+     * @param configOutputDir The directory containing the configuration files of this test case
+     *                        only, i.e., `config/<test>`; the metadata of the other test cases is
+     *                        neither seen by native-image nor hashed into the manifest.
      * @param nativeImagePath The path to Native Image executable.
+     * @param workDirectory   The working directory of the native-image run.
+     * @param logDirectory    The directory `native-image.log` is written to.
+     * @param deadline        If given, native-image is killed once it has passed.
+     * @return The resources used by native-image, `None` if the previous call tree was reused.
      */
-    def generateCallGraph(jarFile: Path, configOutputDir: Path, nativeImagePath : Path): Unit = {
+    def generateCallGraph(
+        jarFile:         Path,
+        configOutputDir: Path,
+        nativeImagePath: Path,
+        workDirectory:   Path,
+        logDirectory:    Path,
+        deadline:        Option[Deadline] = None
+    ): Option[ProcessStats] = {
 
         val nativeImageCommand = Seq(
             nativeImagePath.toString,
@@ -114,81 +335,57 @@ object NativeImageJCGAdapter extends JavaTestAdapter {
             jarFile.toString
         )
 
+        val callGraphDir = Paths.get("./CallGraphs").resolve(jarFile.getFileName.toString.stripSuffix(".jar"))
+        val manifest =
+            if (AnalysisManifest.enabled)
+                Some(AnalysisManifest(jarFile, configOutputDir, nativeImageCommand, GraalPathResolver.graalVersion()))
+            else None
+        if (manifest.exists(AnalysisManifest.isUpToDate(callGraphDir, _))) {
+            println(s"[info] Call graph of ${jarFile.getFileName} is up to date, reusing $callGraphDir")
+            return None;
+        }
+
         // Generating call graphs
-        println(s"[info] Running native-image command: ${nativeImageCommand.mkString(" ")}")
-        val nativeImageResult = Try(nativeImageCommand.!!)
-        nativeImageResult match {
-            case Success(output) =>
-                println(s"[info] Call graph generated for ${jarFile.getFileName}:\n$output")
-            case Failure(e) => println(s"[error] Failed to generate call graph for ${jarFile.getFileName}: ${e.getMessage}")
+        val logFile = logDirectory.resolve("native-image.log")
+        println(s"[info] Running native-image command: ${nativeImageCommand.mkString(" ")} (log: $logFile)")
+        val statsParser = new NativeImageStatsParser
+        val nativeImageResult =
+            MonitoredProcess.run(nativeImageCommand, workDirectory, logFile, deadline, statsParser.accept)
+        if (nativeImageResult.timedOut) {
+            throw new TimeoutException(s"native-image for ${jarFile.getFileName} timed out (log: $logFile)")
+        } else if (!nativeImageResult.succeeded) {
+            throw new IllegalStateException(
+                s"Failed to generate call graph for ${jarFile.getFileName} (log: $logFile): " +
+                    nativeImageResult.failureDescription
+            )
         }
+        println(s"[info] Call graph generated for ${jarFile.getFileName}")
 
         // Moving them to their own folder for each test case, deletes previous in case of a rerun
-        val callGraphDir = Paths.get("./CallGraphs").resolve(jarFile.getFileName.toString.stripSuffix(".jar"))
         if (Files.exists(callGraphDir)) {
             FileUtils.deleteDirectory(callGraphDir.toFile)
         }
         Files.createDirectories(callGraphDir)
-        val reportsFolder = Paths.get("./reports")
+        val reportsFolder = workDirectory.resolve("reports")
         if (Files.exists(reportsFolder)) {
             Files.move(reportsFolder, callGraphDir, StandardCopyOption.REPLACE_EXISTING)
             println(s"[info] Moved folder from $reportsFolder to $callGraphDir")
+            val stats = statsParser.result
+            if (!stats.isEmpty)
+                stats.write(callGraphDir.resolve(NativeImageStats.FileName))
+            manifest.foreach(AnalysisManifest.write(callGraphDir, _))
         } else {
             println(s"[error] Source folder $reportsFolder does not exist.")
         }
-    }
-
-    /**
-     * Parses CSV file into a list.
-     *
-     * @param filePath The name of the .csv file.
-     */
-    def readCsv(filePath: String): List[Map[String, String]] = {
-        val reader = Files.newBufferedReader(Paths.get(filePath))
-        val csvParser = new CSVParser(reader, CSVFormat.DEFAULT.withFirstRecordAsHeader())
-        csvParser.asScala.map(_.toMap.asScala.toMap).toList
-    }
-
-    def parseMethods(csvData: List[Map[String, String]]): List[NativeImageMethod] = {
-        csvData.map { row =>
-            NativeImageMethod(
-                id = row("Id").toInt,
-                name = row("Name"),
-                declaringClass = row("Type"),
-                parameterTypes = row("Parameters"),
-                returnType = row("Return"),
-                display = row("Display"),
-                flags = row("Flags"),
-                isEntryPoint = row("IsEntryPoint").toBoolean
-            )
-        }
-    }
-
-    def parseInvocations(csvData: List[Map[String, String]]): List[NativeImageInvocation] = {
-        csvData.map { row =>
-            NativeImageInvocation(
-                id = row("Id").toInt,
-                methodId = row("MethodId").toInt,
-                bytecodeIndexes = row("BytecodeIndexes"),
-                targetId = row("TargetId").toInt,
-                isDirect = row("IsDirect").toBoolean,
-                lineNumber = row.get("LineNumbers").flatMap(s => s.toIntOption).getOrElse(-1) // -1 if unknown
-            )
-        }
-    }
-
-    def parseTargets(csvData: List[Map[String, String]]): List[NativeImageTarget] = {
-        csvData.map { row =>
-            NativeImageTarget(
-                invokeId = row("InvokeId").toInt,
-                targetId = row("TargetId").toInt
-            )
-        }
+        Some(nativeImageResult.stats)
     }
 
     /**
      * Builds call graph using the csv data.
      *
+     * The tables are first turned into an int-indexed [[NativeImageCallTree]] in a single linear
+     * pass, which is then converted into the [[ReachableMethods]] representation.
+     *
      * @param methods Methods data from the generated csv.
      * @param invocations Invokes data from the generated csv.
      * @param targets Targets data from the generated csv.
@@ -198,46 +395,61 @@ object NativeImageJCGAdapter extends JavaTestAdapter {
                         invocations: List[NativeImageInvocation],
                         targets: List[NativeImageTarget]
                       ): ReachableMethods = {
-        val methodMap = methods.map(m => m.id -> m).toMap
+        NativeImageCallTree(methods, invocations, targets).toReachableMethods
+    }
 
-        // Build invocation to targets mapping
-        val invocationTargets = targets.groupBy(_.invokeId).mapValues(_.map(_.targetId))
+    /**
+     * Loads the call tree CSV files of a test case into a [[NativeImageCallTree]].
+     *
+     * The files are streamed record by record straight into the index, no intermediate
+     * per-row representation is kept.
+     *
+     * @param testFolder Folder containing the `call_tree_*.csv` files.
+     */
+    def loadCallTree(testFolder: String): NativeImageCallTree = {
+        val builder = new NativeImageCallTree.Builder
+
+        Using.resource(CallTreeCsvReader.open(Paths.get(testFolder, "call_tree_methods.csv"))) { csv =>
+            val id = csv.column("Id")
+            val name = csv.column("Name")
+            val declaringClass = csv.column("Type")
+            val parameterTypes = csv.column("Parameters")
+            val returnType = csv.column("Return")
+            while (csv.next()) {
+                builder.addMethod(
+                    csv.int(id),
+                    csv.string(name),
+                    csv.string(declaringClass),
+                    csv.string(parameterTypes),
+                    csv.string(returnType)
+                )
+            }
+        }
 
-        val reachableMethods = methods.map { method =>
-            val methodSignature = Method(
-                name = method.name,
-                declaringClass = toJvmTypeDescriptor(method.declaringClass),
-                returnType = toJvmTypeDescriptor(method.returnType),
-                parameterTypes = parseParameterTypes(method.parameterTypes)
-            )
+        Using.resource(CallTreeCsvReader.open(Paths.get(testFolder, "call_tree_invokes.csv"))) { csv =>
+            val id = csv.column("Id")
+            val methodId = csv.column("MethodId")
+            val targetId = csv.column("TargetId")
+            val lineNumbers = csv.optionalColumn("LineNumbers")
+            while (csv.next()) {
+                builder.addInvoke(
+                    csv.int(id),
+                    csv.int(methodId),
+                    csv.int(targetId),
+                    csv.intOrElse(lineNumbers, -1) // -1 if unknown
+                )
+            }
+        }
+
+        Using.resource(CallTreeCsvReader.open(Paths.get(testFolder, "call_tree_targets.csv"))) { csv =>
+            val invokeId = csv.column("InvokeId")
+            val targetId = csv.column("TargetId")
+            while (csv.next()) {
+                builder.addTarget(csv.int(invokeId), csv.int(targetId))
+            }
+        }
 
-            val callSites = invocations
-              .filter(_.methodId == method.id)
-              .map { invocation =>
-                  // Get ALL targets for this invocation
-                  val targetIds = invocationTargets.getOrElse(invocation.id, List(invocation.targetId))
-                  val targetSignatures = targetIds.map { targetId =>
-                      val targetMethod = methodMap(targetId)
-                      Method(
-                          name = targetMethod.name,
-                          declaringClass = toJvmTypeDescriptor(targetMethod.declaringClass),
-                          returnType = toJvmTypeDescriptor(targetMethod.returnType),
-                          parameterTypes = parseParameterTypes(targetMethod.parameterTypes)
-                      )
-                  }.toSet
-
-                  CallSite(
-                      declaredTarget = targetSignatures.head,
-                      line = invocation.lineNumber,
-                      pc = None,
-                      targets = targetSignatures
-                  )
-              }.toSet
-
-            ReachableMethod(methodSignature, callSites)
-        }.toSet
-
-        ReachableMethods(reachableMethods)
+        builder.result()
     }
 
     /**
@@ -294,24 +506,22 @@ object NativeImageJCGAdapter extends JavaTestAdapter {
      * to the json format that Evaluation accepts.
      *
      * @param jarFileName Testcase name.
+     * @param output      Writer the compact JSON is streamed to.
+     * @param timings     Receives the durations of the parse, build and write phases.
      */
-    def serializeCallGraph(jarFileName: String): String = {
-        // Read CSV files
+    def serializeCallGraph(jarFileName: String, output: Writer, timings: AnalysisTimings): Unit = {
         val testFolderName = "./CallGraphs/" + jarFileName.stripSuffix(".jar")
         println(s"[info] Test folder name: $testFolderName")
-        val methodsCsv = readCsv(s"$testFolderName/call_tree_methods.csv")
-        val invocationsCsv = readCsv(s"$testFolderName/call_tree_invokes.csv")
-        val targetsCsv = readCsv(s"$testFolderName/call_tree_targets.csv")
-
-        // Parse CSV data
-        val methods = parseMethods(methodsCsv)
-        val invocations = parseInvocations(invocationsCsv)
-        val targets = parseTargets(targetsCsv)
 
         // Build call graph
-        val callGraph = buildCallGraph(methods, invocations, targets)
-
-        // Serialize to JSON
-        Json.prettyPrint(Json.toJson(callGraph))
+        val callTree = timings.time("csvParse")(loadCallTree(testFolderName))
+        val callGraph = timings.time("graphBuild")(callTree.toReachableMethods)
+
+        // Serialize to JSON; the evaluation may hand over an unbuffered writer
+        timings.time("jsonWrite") {
+            val buffered = new BufferedWriter(output, 1 << 16)
+            ReachableMethodsWriter.write(callGraph, buffered)
+            buffered.flush()
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path}
+import scala.collection.mutable
+import play.api.libs.json.{Format, Json}
+
+/**
+ * A build phase reported by native-image, e.g., `Performing analysis...` taking `seconds` with
+ * `memoryGB` of heap in use at its end.
+ */
+case class AnalysisPhase(name: String, seconds: Double, memoryGB: Option[Double])
+
+object AnalysisPhase {
+    implicit val analysisPhaseFormat: Format[AnalysisPhase] = Json.format[AnalysisPhase]
+}
+
+case class ReachableCount(reachable: Long, total: Long)
+
+object ReachableCount {
+    implicit val reachableCountFormat: Format[ReachableCount] = Json.format[ReachableCount]
+}
+
+/**
+ * The statistics native-image prints about a build, stored as `analysis-stats.json`.
+ *
+ * @param reachable    Reachable and total number of `types`, `fields` and `methods`.
+ * @param peakRssBytes Peak RSS of the native-image builder as reported by itself.
+ * @param totalSeconds Duration of the whole build as reported by itself.
+ */
+case class NativeImageStats(
+    phases:       Seq[AnalysisPhase],
+    reachable:    Map[String, ReachableCount],
+    peakRssBytes: Option[Long],
+    totalSeconds: Option[Double]
+) {
+
+    /**
+     * Duration of the points-to analysis.
+     */
+    def analysisSeconds: Option[Double] =
+        phases.find(p => p.name.startsWith("Performing analysis") || p.name == "analysis").map(_.seconds)
+
+    def isEmpty: Boolean = phases.isEmpty && reachable.isEmpty && peakRssBytes.isEmpty && totalSeconds.isEmpty
+
+    def write(file: Path): Unit = {
+        Files.createDirectories(file.getParent)
+        Files.writeString(file, Json.prettyPrint(Json.toJson(this)), StandardCharsets.UTF_8)
+    }
+}
+
+object NativeImageStats {
+
+    val FileName = "analysis-stats.json"
+
+    implicit val nativeImageStatsFormat: Format[NativeImageStats] = Json.format[NativeImageStats]
+
+    def read(file: Path): NativeImageStats =
+        Json.parse(Files.readAllBytes(file)).as[NativeImageStats]
+
+    def parse(output: String): NativeImageStats = {
+        val parser = new NativeImageStatsParser
+        output.linesIterator.foreach(parser.accept)
+        parser.result
+    }
+}
+
+/**
+ * Extracts [[NativeImageStats]] from the console output of native-image, line by line.
+ *
+ * Both the output of GraalVM 22 and newer (`[2/8] Performing analysis... (10.0s @ 0.92GB)`,
+ * `14,451 (46.23%) of 31,259 methods reachable`, `Peak RSS: 2.16GB`) and the older
+ * `[test:1234]    analysis:  10,234.56 ms,  1.23 GB` format are understood; other lines are ignored.
+ */
+class NativeImageStatsParser {
+
+    import NativeImageStatsParser._
+
+    private val phases = mutable.ArrayBuffer.empty[AnalysisPhase]
+    private val reachable = mutable.LinkedHashMap.empty[String, ReachableCount]
+    private var peakRssBytes: Option[Long] = None
+    private var totalSeconds: Option[Double] = None
+
+    def accept(rawLine: String): Unit = {
+        val line = AnsiEscape.replaceAllIn(rawLine, "")
+        line match {
+            case Phase(name, seconds, memory) =>
+                phases += AnalysisPhase(name.trim, seconds.toDouble, Some(memory.toDouble))
+            case LegacyPhase(name, millis, memory) =>
+                phases += AnalysisPhase(name, number(millis) / 1000, Option(memory).map(_.toDouble))
+            case Reachable(count, total, kind) =>
+                val key = if (kind == "classes") "types" else kind
+                reachable(key) = ReachableCount(number(count).toLong, number(total).toLong)
+            case Finished(minutes, seconds) =>
+                totalSeconds = Some(Option(minutes).fold(0d)(_.toDouble * 60) + seconds.toDouble)
+            case _ =>
+        }
+        PeakRss.findFirstMatchIn(line).foreach { m =>
+            peakRssBytes = Some((m.group(1).toDouble * unitBytes(m.group(2))).toLong)
+        }
+    }
+
+    def result: NativeImageStats = NativeImageStats(phases.toSeq, reachable.toMap, peakRssBytes, totalSeconds)
+}
+
+object NativeImageStatsParser {
+
+    private val AnsiEscape = "\u001B\\[[;\\d]*m".r
+
+    private val Phase = """^\[\d+/\d+\]\s+(.+?)(?:\s*\[[*.]*\])?\s+\(([\d.]+)s @ ([\d.]+)GB\)\s*$""".r
+
+    private val LegacyPhase = """^\[[^\]]+:\d+\]\s+(\(?[\w ]+?\)?):\s+([\d,.]+) ms(?:,\s+([\d.]+) GB)?\s*$""".r
+
+    private val Reachable = """^\s*([\d,]+)\s+\(\s*[\d.]+%\) of\s+([\d,]+) (types|classes|fields|methods) reachable.*$""".r
+
+    private val Finished = """^Finished generating .* in (?:(\d+)m )?([\d.]+)s\.\s*$""".r
+
+    private val PeakRss = """Peak RSS: ([\d.]+)([KMG]B)""".r
+
+    private def number(value: String): Double = value.replace(",", "").toDouble
+
+    private def unitBytes(unit: String): Double = unit match {
+        case "KB" => 1024d
+        case "MB" => 1024d * 1024
+        case _    => 1024d * 1024 * 1024
+    }
+}
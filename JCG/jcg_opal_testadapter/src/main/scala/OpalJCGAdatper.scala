@@ -45,6 +45,9 @@ object OpalJCGAdatper extends JavaTestAdapter {
 
     val frameworkName: String = "OPAL"
 
+    override def frameworkVersion: String =
+        TestAdapter.codeVersion(getClass, classOf[Project[_]], CHACallGraphKey.getClass)
+
     def serializeCG(
         algorithm:      String,
         inputDirPath:   String,
@@ -23,6 +23,8 @@ object SootJCGAdapter extends JavaTestAdapter {
     val possibleAlgorithms: Array[String] = Array(CHA, RTA, VTA, Spark)
 
     val frameworkName: String = "Soot"
+
+    override def frameworkVersion: String = TestAdapter.codeVersion(getClass, classOf[Scene])
     def serializeCG(
         algorithm:      String,
         inputDirPath:   String,
@@ -9,13 +9,34 @@ class AdapterOptions private (val options: Map[String, Any]) {
 
     def getBoolean(key: String): Boolean = getOptionAs[Boolean](key).getOrElse(false)
 
+    def getInt(key: String, default: Int): Int = options.get(key) match {
+        case Some(value: Int) => value
+        case _                => default
+    }
+
     def getStringArray(key: String): Array[String] = getOptionAs[Array[String]](key).getOrElse(Array.empty)
+
+    /**
+     * The options that may change the computed call graph, i.e., all options except `outputDir`
+     * and `timeout`, as `key=value` strings sorted by key.
+     */
+    def resultRelevantOptions: Seq[String] = {
+        options.toSeq.filterNot { case (key, _) => key == "outputDir" || key == "timeout" }.sortBy(_._1).map {
+            case (key, values: Array[_]) => s"$key=${values.mkString("[", ",", "]")}"
+            case (key, value)            => s"$key=$value"
+        }
+    }
 }
 
 object AdapterOptions {
 
     /**
      * Creates a new AdapterOptions object for Java test adapters.
+     *
+     * `outputDir` is the directory the serialized call graph is written to; adapters may store
+     * additional per-test reports, e.g., timings, there. `timeout` is the wall-clock budget of the
+     * analysis in seconds, adapters should terminate external processes that exceed it; `-1` means
+     * no limit.
      */
     def makeJavaOptions(
         mainClass:   String,
@@ -24,7 +45,9 @@ object AdapterOptions {
         analyzeJDK:  Boolean,
         target:      String        = "",
         jvmArgs:     Array[String] = Array.empty,
-        programArgs: Array[String] = Array.empty
+        programArgs: Array[String] = Array.empty,
+        outputDir:   String        = null,
+        timeout:     Int           = -1
     ): AdapterOptions = {
         new AdapterOptions(Map(
             "mainClass" -> mainClass,
@@ -33,10 +56,19 @@ object AdapterOptions {
             "analyzeJDK" -> analyzeJDK,
             "target" -> target,
             "jvmArgs" -> jvmArgs,
-            "programArgs" -> programArgs
+            "programArgs" -> programArgs,
+            "outputDir" -> outputDir,
+            "timeout" -> timeout
         ))
     }
 
+    /**
+     * Recreates an AdapterOptions object from its `options`, e.g., in another JVM.
+     */
+    def fromMap(options: Map[String, Any]): AdapterOptions = {
+        new AdapterOptions(options)
+    }
+
     /**
      * Creates an empty AdapterOptions object.
      */
@@ -0,0 +1,91 @@
+import java.io.InputStream
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.security.MessageDigest
+import java.util.zip.ZipFile
+import scala.jdk.CollectionConverters._
+import scala.util.Using
+
+/**
+ * Incrementally computes a SHA-256 digest over strings, files, jar contents and directories.
+ * Used to derive cache keys from the inputs of an analysis run.
+ */
+class ContentHash {
+    private val digest = MessageDigest.getInstance("SHA-256")
+    private val buffer = new Array[Byte](1 << 16)
+
+    def update(value: String): ContentHash = {
+        val bytes = value.getBytes(StandardCharsets.UTF_8)
+        updateLength(bytes.length)
+        digest.update(bytes)
+        this
+    }
+
+    /**
+     * Hashes the bytes of the given file.
+     */
+    def updateFile(file: Path): ContentHash = {
+        updateLength(Files.size(file))
+        Using.resource(Files.newInputStream(file))(updateStream)
+        this
+    }
+
+    /**
+     * Hashes the names and contents of the entries of the given jar in name order. Unlike
+     * [[updateFile]], the result does not change if the same classes are packaged again, as
+     * entry timestamps are ignored.
+     */
+    def updateJarContents(jar: Path): ContentHash = {
+        Using.resource(new ZipFile(jar.toFile)) { zip =>
+            val entries = zip.entries().asScala.filterNot(_.isDirectory).toSeq.sortBy(_.getName)
+            updateLength(entries.size)
+            for (entry <- entries) {
+                update(entry.getName)
+                updateLength(entry.getSize)
+                Using.resource(zip.getInputStream(entry))(updateStream)
+            }
+        }
+        this
+    }
+
+    /**
+     * Hashes the relative paths and contents of all files in the given directory tree.
+     * A missing directory is hashed like an empty one.
+     */
+    def updateDirectory(dir: Path): ContentHash = {
+        val files =
+            if (Files.isDirectory(dir))
+                Using.resource(Files.walk(dir)) { paths =>
+                    paths.iterator().asScala.filter(Files.isRegularFile(_)).toSeq
+                }
+            else Seq.empty
+        updateLength(files.size)
+        for (file <- files.sortBy(dir.relativize(_).toString)) {
+            update(dir.relativize(file).toString)
+            updateFile(file)
+        }
+        this
+    }
+
+    /**
+     * Returns the hex representation of the digest; the hash must not be updated afterwards.
+     */
+    def hex: String = digest.digest().map(b => f"${b & 0xff}%02x").mkString
+
+    private def updateLength(length: Long): Unit = {
+        var i = 0
+        while (i < 8) {
+            digest.update((length >>> (8 * i)).toByte)
+            i += 1
+        }
+    }
+
+    private def updateStream(in: InputStream): Unit = {
+        var read = in.read(buffer)
+        while (read >= 0) {
+            digest.update(buffer, 0, read)
+            read = in.read(buffer)
+        }
+    }
+}
@@ -0,0 +1,49 @@
+import java.io.Writer
+
+/**
+ * A [[TestAdapter]] whose `serializeCG` consists of consecutive stages, e.g., running a
+ * program under an agent, running the analysis and serializing the call graph.
+ *
+ * A driver can run the stages of different test cases on different threads, so that, e.g., the
+ * analysis of one test case overlaps with the preparation of the next one.
+ */
+trait PipelinedTestAdapter extends TestAdapter {
+
+    /**
+     * Names of the stages in execution order.
+     */
+    val stages: Seq[String]
+
+    /**
+     * Prepares the run of a single test case, no stage is executed yet. The arguments are the
+     * same as for `serializeCG`.
+     */
+    def startRun(
+        algorithm:      String,
+        inputDirPath:   String,
+        output:         Writer,
+        adapterOptions: AdapterOptions = AdapterOptions.makeEmptyOptions()
+    ): PipelinedRun
+}
+
+/**
+ * The run of a [[PipelinedTestAdapter]] for a single test case.
+ *
+ * The stages must be run in order and each at most once, but not necessarily by the same thread.
+ * If a stage fails, the remaining stages are skipped. [[finish]] must be called exactly once
+ * after the last stage that was run, regardless of failures.
+ */
+trait PipelinedRun {
+
+    /**
+     * Runs the stage with the given index into [[PipelinedTestAdapter.stages]].
+     */
+    def runStage(stage: Int): Unit
+
+    /**
+     * Closes the output and releases all resources of the run.
+     *
+     * @return The elapsed time of the run in nanoseconds, as returned by `serializeCG`.
+     */
+    def finish(): Long
+}
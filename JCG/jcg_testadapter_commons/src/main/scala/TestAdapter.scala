@@ -1,4 +1,8 @@
 import java.io.Writer
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.concurrent.ConcurrentHashMap
 
 trait TestAdapter {
     val frameworkName: String
@@ -11,4 +15,40 @@ trait TestAdapter {
         output:         Writer,
         adapterOptions: AdapterOptions = AdapterOptions.makeEmptyOptions()
     ): Long
+
+    /**
+     * Identifies the version of the adapter and of the analysis it runs; call graphs computed
+     * by another version are not reused. By default, the code of the adapter itself is hashed,
+     * adapters should add the library or tool performing the analysis.
+     */
+    def frameworkVersion: String = TestAdapter.codeVersion(getClass)
+}
+
+object TestAdapter {
+
+    private val codeSourceHashes = new ConcurrentHashMap[Path, String]()
+
+    /**
+     * Hashes the jars or class directories the given classes are loaded from. Every code source
+     * is hashed only once per JVM.
+     */
+    def codeVersion(classes: Class[_]*): String = {
+        val hash = new ContentHash()
+        for (c <- classes) {
+            Option(c.getProtectionDomain.getCodeSource).flatMap(cs => Option(cs.getLocation)) match {
+                case Some(location) =>
+                    val path = Paths.get(location.toURI)
+                    hash.update(codeSourceHashes.computeIfAbsent(path, hashCodeSource))
+                case None =>
+                    // loaded by the bootstrap class loader, i.e., part of the JDK
+                    hash.update(s"${c.getName}@${System.getProperty("java.version")}")
+            }
+        }
+        hash.hex
+    }
+
+    private def hashCodeSource(path: Path): String = {
+        if (Files.isDirectory(path)) new ContentHash().updateDirectory(path).hex
+        else new ContentHash().updateFile(path).hex
+    }
 }
@@ -0,0 +1,124 @@
+import lib.annotations.callgraph.DirectCall
+import lib.annotations.callgraph.DirectCalls
+import lib.annotations.callgraph.IndirectCall
+import lib.annotations.callgraph.IndirectCalls
+
+import java.io.File
+import java.lang.annotation.Annotation
+import java.lang.reflect.Constructor
+import java.lang.reflect.Executable
+import java.lang.reflect.Modifier
+import java.net.URLClassLoader
+
+/**
+ * Extracts the [[Expectations]] of a freshly compiled test case by loading its classes via
+ * reflection (without initializing them), so that the CG matcher does not need to analyze the
+ * bytecode.
+ *
+ * The classes are sorted by name, their methods and constructors by name and descriptor.
+ */
+object ExpectationsExtractor {
+
+    /**
+     * @param bin       the directory containing the compiled classes of the test case.
+     * @param classPath further directories needed to load the classes, e.g., the annotations.
+     */
+    def extract(bin: File, classPath: Seq[File]): Expectations = {
+        val loader = new URLClassLoader(
+            (bin +: classPath).map(_.toURI.toURL).toArray,
+            getClass.getClassLoader
+        )
+        try {
+            val classNames = FileOperations.listFilesRecursively(bin, ".class").map { f ⇒
+                bin.toPath.relativize(f.toPath).toString.stripSuffix(".class").replace(File.separatorChar, '.')
+            }.sorted
+
+            val annotatedMethods = for {
+                className ← classNames.toSeq
+                clazz = Class.forName(className, false, loader)
+                executable ← (clazz.getDeclaredConstructors ++ clazz.getDeclaredMethods).sortBy(descriptor)
+                if !Modifier.isAbstract(executable.getModifiers) && !Modifier.isNative(executable.getModifiers)
+                annotations = executable.getDeclaredAnnotations.toSeq.flatMap(expectedCalls)
+                if annotations.nonEmpty
+            } yield AnnotatedMethod(method(executable), annotations)
+
+            Expectations(annotatedMethods)
+        } finally {
+            loader.close()
+        }
+    }
+
+    /**
+     * Extracts the expectations of the test case and writes them next to its jar. If they cannot
+     * be extracted, e.g., because a class does not load, a stale file is removed and the CG
+     * matcher falls back to reading the annotations from the bytecode.
+     */
+    def writeExpectations(bin: File, classPath: Seq[File], target: File): Unit = {
+        try {
+            Expectations.write(extract(bin, classPath), target)
+        } catch {
+            case e @ (_: ReflectiveOperationException | _: LinkageError) ⇒
+                Expectations.file(target).delete()
+                println(s"could not extract the expectations of ${target.getName}: $e")
+        }
+    }
+
+    private def expectedCalls(annotation: Annotation): Option[ExpectedCalls] = annotation match {
+        case dc: DirectCall     ⇒ Some(ExpectedCalls(Seq(expectedCall(dc)), Seq.empty))
+        case dcs: DirectCalls   ⇒ Some(ExpectedCalls(dcs.value.toSeq.map(expectedCall), Seq.empty))
+        case ic: IndirectCall   ⇒ Some(ExpectedCalls(Seq.empty, Seq(expectedCall(ic))))
+        case ics: IndirectCalls ⇒ Some(ExpectedCalls(Seq.empty, ics.value.toSeq.map(expectedCall)))
+        case _                  ⇒ None
+    }
+
+    private def expectedCall(dc: DirectCall): ExpectedCall = ExpectedCall(
+        dc.name,
+        dc.line,
+        returnType(dc.returnType),
+        dc.parameterTypes.toList.map(jvmTypeName),
+        dc.resolvedTargets.toList,
+        dc.prohibitedTargets.toList
+    )
+
+    private def expectedCall(ic: IndirectCall): ExpectedCall = ExpectedCall(
+        ic.name,
+        ic.line,
+        returnType(ic.returnType),
+        ic.parameterTypes.toList.map(jvmTypeName),
+        ic.resolvedTargets.toList,
+        ic.prohibitedTargets.toList
+    )
+
+    /**
+     * `Void.class` is the default of the annotations and stands for an unspecified return type,
+     * which the matcher treats as `void`.
+     */
+    private def returnType(clazz: Class[_]): String =
+        if (clazz == classOf[java.lang.Void]) "V" else jvmTypeName(clazz)
+
+    private def method(executable: Executable): Method = executable match {
+        case c: Constructor[_] ⇒
+            Method("<init>", jvmTypeName(c.getDeclaringClass), "V", c.getParameterTypes.toList.map(jvmTypeName))
+        case m: java.lang.reflect.Method ⇒
+            Method(m.getName, jvmTypeName(m.getDeclaringClass), jvmTypeName(m.getReturnType), m.getParameterTypes.toList.map(jvmTypeName))
+    }
+
+    private def descriptor(executable: Executable): String = {
+        val m = method(executable)
+        s"${m.name}(${m.parameterTypes.mkString})${m.returnType}"
+    }
+
+    private def jvmTypeName(clazz: Class[_]): String = {
+        if (clazz.isArray) "[" + jvmTypeName(clazz.getComponentType)
+        else if (clazz == java.lang.Void.TYPE) "V"
+        else if (clazz == java.lang.Boolean.TYPE) "Z"
+        else if (clazz == java.lang.Byte.TYPE) "B"
+        else if (clazz == java.lang.Character.TYPE) "C"
+        else if (clazz == java.lang.Short.TYPE) "S"
+        else if (clazz == java.lang.Integer.TYPE) "I"
+        else if (clazz == java.lang.Long.TYPE) "J"
+        else if (clazz == java.lang.Float.TYPE) "F"
+        else if (clazz == java.lang.Double.TYPE) "D"
+        else s"L${clazz.getName.replace('.', '/')};"
+    }
+}
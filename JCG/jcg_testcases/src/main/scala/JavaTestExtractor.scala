@@ -77,6 +77,8 @@ object JavaTestExtractor extends TestCaseExtractor {
                 println(s"[DEBUG] EXIT CODE $exitCode")
             }
 
+            ExpectationsExtractor.writeExpectations(bin, targetDirs, outPathCompiler)
+
             if (main != null) {
                 println(s"running $projectName.jar")
                 sys.process.Process(Seq("java", "-jar", s"$projectName.jar"), resultsDir).!
@@ -157,6 +157,9 @@ object WalaJCGAdapter extends JavaTestAdapter {
 
     val frameworkName: String = "WALA"
 
+    override def frameworkVersion: String =
+        TestAdapter.codeVersion(getClass, classOf[AnalysisOptions], classOf[NullProgressMonitor])
+
     private def createMethodObject(method: MethodReference): Method = {
         val name = method.getName.toString
         val declaringClass = toJVMString(method.getDeclaringClass)